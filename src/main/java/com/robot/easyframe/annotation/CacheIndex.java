@@ -0,0 +1,29 @@
+package com.robot.easyframe.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 缓存索引配置
+ * 标记在缓存类（BaseCache的子类）上，缓存加载或刷新时为指定属性建立索引，
+ * DataEngine查询时优先使用索引定位数据，避免全量扫描
+ *
+ * @author luozhan
+ * @date 2020-03
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CacheIndex {
+    /**
+     * 建立哈希索引的属性，用于等值和in查询
+     * 如：{"RES_TYPE_ID", "RES_STATE"}
+     */
+    String[] value() default {};
+
+    /**
+     * 建立有序索引的属性，用于<、>、<=、>=和between查询
+     * 数字和时间类型的属性按数值排序，其余按字符串排序
+     * 如：{"CREATE_DATE"}
+     */
+    String[] sorted() default {};
+}
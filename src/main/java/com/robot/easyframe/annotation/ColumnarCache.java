@@ -0,0 +1,20 @@
+package com.robot.easyframe.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 列式存储缓存
+ * 标记在缓存类（BaseCache的子类）上，整表数据将按列保存（整数、时间列转为long数组，字符串列做字典编码），
+ * 适用于数据量大、重复值多的表，可明显减少内存占用；DataEngine查询时直接在列上过滤，只为返回的数据生成bean
+ * <p>
+ * 注：缓存类重写了getData()方法时不生效
+ *
+ * @author luozhan
+ * @date 2020-03
+ * @see com.robot.easyframe.core.cache.ColumnStore
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ColumnarCache {
+}
@@ -27,7 +27,10 @@ public enum DicType {
     /**
      * 组织翻译
      */
-    ORG
-
+    ORG,
+    /**
+     * 自定义翻译，通过{@link Translate#provider()}指定翻译数据提供者
+     */
+    CUSTOM
 
 }
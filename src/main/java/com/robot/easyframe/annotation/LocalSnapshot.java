@@ -0,0 +1,29 @@
+package com.robot.easyframe.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 本地快照文件
+ * 标记在缓存类（BaseCache的子类）上，整表加载后将数据写入本地磁盘，
+ * 节点重启后首次加载时，若快照文件的数据版本未过期则直接读取文件，不再查询数据库，避免大量节点同时重启时冲击数据库
+ * <p>
+ * 过期判断：
+ * 1.缓存类重写{@code getDataVersion()}时，返回值与文件中的不一致即过期；
+ * 2.任意节点刷新该缓存时会更新zk节点/AICACHE_DELTA/{dataType}/{cacheId}的版本（需预先创建），版本变化即过期；
+ * 3.{@link #maxAge()}大于0时，超过有效时间即过期
+ * 未重写getDataVersion()且maxAge为0时无法判断数据是否被修改，不使用快照文件
+ * 注：只对本地缓存生效，分布式缓存的节点数据来自redis，加载方每次都需要读取数据源
+ *
+ * @author luozhan
+ * @date 2020-03
+ * @see com.robot.easyframe.core.cache.LocalSnapshotStore
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface LocalSnapshot {
+    /**
+     * 快照文件的最长有效时间（秒），0表示不限制（此时须重写getDataVersion()）
+     */
+    int maxAge() default 0;
+}
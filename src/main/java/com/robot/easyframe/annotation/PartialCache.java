@@ -0,0 +1,36 @@
+package com.robot.easyframe.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 部分缓存（按需加载）
+ * 标记在bo类名上，适用于数据量太大、不适合缓存整表的表：
+ * Dao的getById()和getByField()查询时先从本地缓存取，未命中的值再批量查询数据库并放入缓存，
+ * 缓存的数据量超过上限时淘汰最近最少使用的数据；通过Dao增删改数据后自动失效
+ *
+ * @author luozhan
+ * @date 2020-03
+ * @see com.robot.easyframe.core.cache.LruCache
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface PartialCache {
+    /**
+     * 最多缓存的数据条数
+     */
+    int maxSize() default 10000;
+
+    /**
+     * 过期时间（秒），0表示不过期
+     * 未开启{@link #distributed()}时，其他节点修改数据后本节点的缓存不会失效，可通过过期时间控制数据的延迟
+     */
+    int expireSeconds() default 0;
+
+    /**
+     * 是否通知其他节点失效
+     * 开启后数据变更的事务提交时，通过zk节点/AICACHE_DELTA/PARTIAL/{bo类名}发布失效的主键（需预先创建该节点），
+     * 其他节点的后台线程定时检查，版本变化时失效对应的缓存
+     */
+    boolean distributed() default false;
+}
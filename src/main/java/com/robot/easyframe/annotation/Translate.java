@@ -1,5 +1,7 @@
 package com.robot.easyframe.annotation;
 
+import com.robot.easyframe.util.TranslateProvider;
+
 import java.lang.annotation.*;
 
 /**
@@ -41,4 +43,16 @@ public @interface Translate {
      * 指定字典value，不指定默认取Dictionary的配置
      */
     String dicValue() default "";
+
+    /**
+     * DAO翻译时，已查询到的编码和名称的缓存时间（秒）
+     * 默认0不缓存，每次翻译都按待翻译数据中的编码查询一次
+     * 员工、组织及自定义翻译默认使用{@link TranslateProvider#cacheSeconds()}，配置了该值时以该值为准
+     */
+    int cacheSeconds() default 0;
+
+    /**
+     * 自定义翻译（DicType.CUSTOM）的翻译数据提供者
+     */
+    Class<? extends TranslateProvider> provider() default TranslateProvider.class;
 }
@@ -0,0 +1,94 @@
+package com.robot.easyframe.core;
+
+/**
+ * 聚合函数，用于{@link com.robot.easyframe.core.engine.DataEngine#aggregate}
+ * <p>
+ * 如：统计每种状态的SIM卡数量及最近的创建时间
+ * DataEngine.aggregate(SimCardCache.class, cond, new String[]{"RES_STATE"}, Aggregate.count(), Aggregate.max("CREATE_DATE"))
+ * 返回结果中每行包含分组属性以及各聚合值，聚合值的属性名默认为 COUNT、MAX_CREATE_DATE，可通过{@link #as(String)}指定
+ *
+ * @author luozhan
+ * @date 2020-03
+ */
+public class Aggregate {
+    public static final String COUNT = "COUNT";
+
+    public static final String SUM = "SUM";
+
+    public static final String MIN = "MIN";
+
+    public static final String MAX = "MAX";
+
+    public static final String COUNT_DISTINCT = "COUNT_DISTINCT";
+
+    private final String type;
+
+    private final String field;
+
+    private final String alias;
+
+    private Aggregate(String type, String field, String alias) {
+        this.type = type;
+        this.field = field;
+        this.alias = alias;
+    }
+
+    /**
+     * 数据条数，同count(*)
+     */
+    public static Aggregate count() {
+        return new Aggregate(COUNT, null, COUNT);
+    }
+
+    /**
+     * 求和，忽略null值，都为null时结果为null
+     *
+     * @param field 数字类型的属性名
+     */
+    public static Aggregate sum(String field) {
+        return new Aggregate(SUM, field, SUM + "_" + field);
+    }
+
+    /**
+     * 最小值，忽略null值
+     */
+    public static Aggregate min(String field) {
+        return new Aggregate(MIN, field, MIN + "_" + field);
+    }
+
+    /**
+     * 最大值，忽略null值
+     */
+    public static Aggregate max(String field) {
+        return new Aggregate(MAX, field, MAX + "_" + field);
+    }
+
+    /**
+     * 不同值的个数，同count(distinct field)，忽略null值
+     */
+    public static Aggregate countDistinct(String field) {
+        return new Aggregate(COUNT_DISTINCT, field, COUNT_DISTINCT + "_" + field);
+    }
+
+    /**
+     * 指定结果中的属性名
+     *
+     * @param alias 属性名
+     * @return 新的聚合函数
+     */
+    public Aggregate as(String alias) {
+        return new Aggregate(type, field, alias);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+}
@@ -2,6 +2,8 @@ package com.robot.easyframe.core.cache;
 
 import com.ai.aif.csf.zookeeper.client.curator.CuratorZkClient;
 import com.ai.appframe2.bo.DataContainer;
+import com.ai.appframe2.common.ServiceManager;
+import com.ai.appframe2.common.Session;
 import com.ai.appframe2.complex.cache.CacheFactory;
 import com.ai.appframe2.complex.cache.CacheSource;
 import com.ai.appframe2.complex.cache.ICache;
@@ -11,23 +13,44 @@ import com.ai.appframe2.complex.xml.cfg.caches.Cache;
 import com.ai.appframe2.complex.xml.cfg.caches.Caches;
 import com.asiainfo.appframe.ext.exeframe.cache.load.v2.AppFrameCacheLoader;
 import com.asiainfo.appframe.ext.exeframe.cache.zk.ZkClient;
+import com.robot.easyframe.annotation.CacheIndex;
+import com.robot.easyframe.annotation.ColumnarCache;
+import com.robot.easyframe.annotation.LocalSnapshot;
 import com.robot.easyframe.core.dao.BaseDao;
+import com.robot.easyframe.core.engine.DaoEngine;
+import com.robot.easyframe.core.metrics.CacheMetrics;
 import com.robot.easyframe.util.Convert;
 import com.robot.easyframe.util.DateUtil;
+import com.robot.easyframe.util.LambdaExceptionUtil;
 import com.robot.easyframe.util.ServiceUtil;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
 
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.util.HashMap;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 /**
  * 缓存基类
  *
  * 子类只需要继承BaseCache后指定泛型（某个Dao接口），即可默认缓存整表数据
- * 若需要自定义缓存内容，请重写getData()方法
+ * 若需要自定义缓存内容，请重写getData()方法（重写后不支持按主键增量刷新）
+ * 数据量大的表可在缓存类上标记{@link ColumnarCache}，按列存储以减少内存占用
+ * 本地缓存可在缓存类上标记{@link LocalSnapshot}，将数据保存到本地文件，节点重启时不再查询数据库
  *
  * @author luozhan
  * @date 2019-10
@@ -36,6 +59,54 @@ public class BaseCache<T extends BaseDao> extends AbstractCache {
     private Class<T> daoClass;
     private static Log log = LogFactory.getLog(BaseCache.class);
 
+    /**
+     * 增量刷新的主键数超过该值时改为全量刷新
+     */
+    public static final int MAX_DELTA_SIZE = 1000;
+
+    /**
+     * 分布式缓存检查增量的间隔（毫秒）
+     */
+    private static final long DELTA_CHECK_INTERVAL = 3000;
+
+    private static final String DELTA_PATH = "/AICACHE_DELTA/%s/%s";
+
+    /**
+     * 发布增量时版本冲突的最大重试次数
+     */
+    private static final int MAX_DELTA_RETRY = 10;
+
+    private static final Pattern PATTERN_DELTA = Pattern.compile("\\{\"version\":(\\d+),\"keys\":(\\[.*])}", Pattern.DOTALL);
+
+    private static final AtomicLong SNAPSHOT_VERSION = new AtomicLong();
+
+    /**
+     * 各缓存当前发布的快照，快照本身不可变，更新时生成新快照后整体替换引用
+     */
+    private static final Map<Class, AtomicReference<CacheSnapshot>> SNAPSHOTS = new ConcurrentHashMap<>();
+
+    /**
+     * 生成快照的锁，同一个缓存同时只有一个线程生成新快照
+     */
+    private static final Map<Class, ReentrantLock> BUILD_LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * 需要检查增量的分布式缓存（本节点已读取过的）
+     */
+    private static final Set<Class<? extends BaseCache>> DELTA_WATCHED = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 检查增量的后台线程，读取缓存的线程不会访问zk和数据库
+     */
+    private static volatile ScheduledExecutorService deltaChecker;
+
+    private static final Map<Class, Cache> CACHE_CONFIGS = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点已加载过的缓存，只有首次加载时才读取本地快照文件
+     */
+    private static final Set<Class> LOADED = ConcurrentHashMap.newKeySet();
+
     @SuppressWarnings("unchecked")
     public BaseCache() {
         // 获取泛型参数T的class
@@ -50,31 +121,167 @@ public class BaseCache<T extends BaseDao> extends AbstractCache {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public HashMap getData() throws Exception {
         // 如果此方法报错"dao调用不在service中"，尝试使用下列注释代码，或者修改AIConfig.xml中的配置：CHECK_DAO_IN_SERVICE
         // if(!ServiceManager.getSession().isStartTransaction()) {
         //        ServiceManager.getSession().startTransaction();
         // }
+        Class<? extends BaseCache> cacheClass = this.getClass();
+        boolean columnar = cacheClass.isAnnotationPresent(ColumnarCache.class);
+        LocalSnapshot snapshotConfig = cacheClass.getAnnotation(LocalSnapshot.class);
+        boolean useSnapshotFile = snapshotConfig != null && !isDistributed(cacheClass);
+        // 数据版本须在加载数据前获取，保证文件的版本不会比数据新
+        String dataVersion = null;
+        if (useSnapshotFile) {
+            String userVersion = getDataVersion();
+            if (userVersion == null && snapshotConfig.maxAge() <= 0) {
+                log.warn("缓存未指定数据版本且maxAge为0，不使用本地快照, cacheId='" + cacheClass.getName() + "'");
+                useSnapshotFile = false;
+            } else {
+                dataVersion = (userVersion == null ? "" : userVersion) + "#" + getSnapshotDeltaVersion(cacheClass);
+            }
+        }
+        boolean firstLoad = LOADED.add(cacheClass);
+
+        HashMap<Class, Object> map = new HashMap<>(1);
+        if (useSnapshotFile && firstLoad) {
+            // 本节点首次加载，优先读取本地快照文件
+            Class<DataContainer> boClass = (Class<DataContainer>) ServiceUtil.get(daoClass).getBoClass();
+            ColumnStore<DataContainer> store = LocalSnapshotStore.read(cacheClass, boClass, dataVersion, snapshotConfig.maxAge() * 1000L);
+            if (store != null) {
+                map.put(cacheClass, columnar ? store : store.toArray());
+                return map;
+            }
+        }
         DataContainer[] data = ServiceUtil.get(daoClass).getAll();
-        HashMap<Class, DataContainer[]> map = new HashMap<>(1);
-        map.put(this.getClass(), data);
+        ColumnStore<DataContainer> store = columnar || useSnapshotFile ? ColumnStore.of(data) : null;
+        if (useSnapshotFile) {
+            LocalSnapshotStore.write(cacheClass, dataVersion, store);
+        }
+        map.put(cacheClass, columnar ? store : data);
         return map;
     }
 
+    /**
+     * 获取当前的数据版本，用于判断本地快照文件是否过期（见{@link LocalSnapshot}）
+     * 默认返回null，即只按zk中的刷新版本和文件生成时间判断；可重写为查询版本表等轻量的方式
+     *
+     * @return 数据版本
+     * @throws Exception
+     */
+    protected String getDataVersion() throws Exception {
+        return null;
+    }
+
+    /**
+     * 获取缓存在本节点的快照（包含已应用的增量数据）
+     * 快照是不可变的，读取过程不加锁，同一个快照中的数据和索引始终一致
+     * 框架重新加载整表缓存后，将基于新数据生成新快照；其他线程正在生成新快照时，继续返回旧快照而不等待
+     * 分布式缓存的增量由后台线程定时检查并应用，读取线程不会访问zk和数据库
+     *
+     * @param cacheClass 缓存class
+     * @return 缓存快照
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    public static <K extends DataContainer> CacheSnapshot<K> getSnapshot(Class<? extends BaseCache> cacheClass) throws Exception {
+        Object source = CacheFactory.get(cacheClass, cacheClass);
+        AtomicReference<CacheSnapshot> reference = SNAPSHOTS.computeIfAbsent(cacheClass, k -> new AtomicReference<>());
+        CacheSnapshot<K> snapshot = reference.get();
+        if (snapshot == null || snapshot.getSource() != source) {
+            snapshot = publish(cacheClass, reference, source, snapshot);
+        }
+        if (isDistributed(cacheClass) && DELTA_WATCHED.add(cacheClass)) {
+            startDeltaChecker();
+        }
+        return snapshot;
+    }
+
+    /**
+     * 获取当前已发布的快照，不会触发加载和增量检查（用于监控等场景）
+     *
+     * @param cacheClass 缓存class
+     * @return 缓存快照，尚未生成时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public static <K extends DataContainer> CacheSnapshot<K> peekSnapshot(Class<? extends BaseCache> cacheClass) {
+        AtomicReference<CacheSnapshot> reference = SNAPSHOTS.get(cacheClass);
+        return reference == null ? null : reference.get();
+    }
+
+    /**
+     * 基于框架新加载的整表数据生成快照并发布
+     *
+     * @param old 当前发布的快照，不为null时如果其他线程正在生成快照，直接返回旧快照
+     */
+    @SuppressWarnings("unchecked")
+    private static <K extends DataContainer> CacheSnapshot<K> publish(Class<? extends BaseCache> cacheClass, AtomicReference<CacheSnapshot> reference,
+                                                                      Object source, CacheSnapshot<K> old) {
+        ReentrantLock lock = BUILD_LOCKS.computeIfAbsent(cacheClass, k -> new ReentrantLock());
+        if (old == null) {
+            lock.lock();
+        } else if (!lock.tryLock()) {
+            return old;
+        }
+        try {
+            CacheSnapshot<K> current = reference.get();
+            if (current != null && current.getSource() == source) {
+                // 其他线程已生成
+                return current;
+            }
+            CacheSnapshot<K> snapshot = source instanceof ColumnStore ?
+                    newSnapshot(cacheClass, source, (ColumnStore<K>) source, -1) :
+                    newSnapshot(cacheClass, source, (K[]) source, -1);
+            reference.set(snapshot);
+            return snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static <K extends DataContainer> CacheSnapshot<K> newSnapshot(Class<? extends BaseCache> cacheClass, Object source, K[] data, long deltaVersion) {
+        return new CacheSnapshot<>(source, data, SNAPSHOT_VERSION.incrementAndGet(), deltaVersion, cacheClass.getAnnotation(CacheIndex.class));
+    }
+
+    private static <K extends DataContainer> CacheSnapshot<K> newSnapshot(Class<? extends BaseCache> cacheClass, Object source, ColumnStore<K> data, long deltaVersion) {
+        return new CacheSnapshot<>(source, data, SNAPSHOT_VERSION.incrementAndGet(), deltaVersion, cacheClass.getAnnotation(CacheIndex.class));
+    }
+
     /**
      * 刷新缓存
+     * 在事务中调用时，等事务提交后再执行，回滚则不刷新（见{@link CacheRefreshManager}）
      *
      * @param cacheClass 缓存class
      * @throws Exception
      */
     public static void refresh(Class<? extends BaseCache> cacheClass) throws Exception {
+        if (CacheRefreshManager.isDeferring()) {
+            CacheRefreshManager.register(cacheClass);
+            return;
+        }
+        refreshNow(cacheClass);
+    }
+
+    /**
+     * 立即刷新缓存
+     */
+    static void refreshNow(Class<? extends BaseCache> cacheClass) throws Exception {
+        long startTime = System.currentTimeMillis();
         String cacheId = cacheClass.getName();
-        Caches caches = XMLHelper.getInstance().getCaches();
-        Cache cache = Stream.of(caches.getCaches()).filter(v -> v.getId().equals(cacheId)).findFirst().get();
+        Cache cache = getCacheConfig(cacheClass);
 
         if (CacheSource.AICACHE == CacheSource.eval(cache.getSource())) {
             log.info("自动更新分布式缓存, cacheId='" + cacheId + "'");
             try {
+                // 在加载前读取增量，加载后只清空这之前发布的增量
+                Stat stat = new Stat();
+                try {
+                    readDelta(getDeltaPath(cache), stat);
+                } catch (Exception e) {
+                    // 未创建增量节点，不需要清空
+                    stat = null;
+                }
                 String newVersion = Convert.toStr(DateUtil.now());
                 // 新加载一版缓存（实质上就是更新redis缓存并在zk对应缓存目录下新增一个版本节点）
                 AppFrameCacheLoader.loadCache(cache, newVersion);
@@ -83,13 +290,393 @@ public class BaseCache<T extends BaseDao> extends AbstractCache {
                 String path = String.format("/AICACHE_LOAD/%s/%s", cache.getDataType(), cacheId);
                 String data = String.format("{\"currentVersion\":%s,\"dbVersion\":%s}", newVersion, newVersion);
                 zkClient.setData(path, data.getBytes());
+                // 全量数据中已包含之前的增量，清空增量记录；加载期间有新发布的增量时保留，由各节点继续应用
+                if (stat != null && !writeDelta(getDeltaPath(cache), stat, new Delta(System.currentTimeMillis(), new String[0]))) {
+                    log.info("全量刷新期间有新发布的增量，保留增量记录, cacheId='" + cacheId + "'");
+                }
             } catch (Throwable e) {
                 log.error("自动更新缓存失败, cacheId='" + cacheId + "'", e);
             }
         } else {
+            touchSnapshotVersion(cacheClass);
             // 非分布式缓存，直接刷新即可
             ((ICache) CacheFactory._getCacheInstances().get(cacheClass)).refresh();
+            // 由刷新线程生成新快照，读取线程在此期间继续使用旧快照
+            getSnapshot(cacheClass);
         }
+        CacheMetrics.recordRefresh(cacheClass, true, 0, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 按主键增量刷新缓存
+     * 只从数据库重新加载指定主键的数据并更新到本地快照，数据库中已不存在的主键将从缓存中移除；
+     * 分布式缓存会通过zk发布变更的主键，其他节点检查到后同样只加载这些主键的数据
+     * <p>
+     * 以下情况将改为全量刷新：
+     * 1.未传主键或主键数量超过{@link #MAX_DELTA_SIZE}
+     * 2.缓存类重写了getData()方法
+     * 3.分布式缓存发布增量失败（需预先在zk中创建/AICACHE_DELTA/{dataType}/{cacheId}节点）
+     * <p>
+     * 在事务中调用时，等事务提交后再从数据库加载并发布增量，回滚则不刷新（见{@link CacheRefreshManager}）
+     *
+     * @param cacheClass 缓存class
+     * @param keys       变更数据的主键
+     * @throws Exception
+     */
+    public static void refresh(Class<? extends BaseCache> cacheClass, String... keys) throws Exception {
+        if (CacheRefreshManager.isDeferring()) {
+            CacheRefreshManager.register(cacheClass, keys);
+            return;
+        }
+        refreshNow(cacheClass, keys);
+    }
+
+    /**
+     * 立即按主键增量刷新缓存
+     */
+    static void refreshNow(Class<? extends BaseCache> cacheClass, String... keys) throws Exception {
+        if (keys.length == 0 || keys.length > MAX_DELTA_SIZE || !isDeltaSupported(cacheClass)) {
+            refreshNow(cacheClass);
+            return;
+        }
+        String cacheId = cacheClass.getName();
+        long deltaVersion = -1;
+        if (isDistributed(cacheClass)) {
+            try {
+                Delta delta = publishDelta(getDeltaPath(getCacheConfig(cacheClass)), keys);
+                if (delta == null) {
+                    refreshNow(cacheClass);
+                    return;
+                }
+                deltaVersion = delta.version;
+                keys = delta.keys;
+                log.info("发布分布式缓存增量, cacheId='" + cacheId + "', 主键数：" + keys.length);
+            } catch (Throwable e) {
+                log.error("发布缓存增量失败，改为全量刷新, cacheId='" + cacheId + "'", e);
+                refreshNow(cacheClass);
+                return;
+            }
+        }
+        if (deltaVersion < 0 && cacheClass.isAnnotationPresent(LocalSnapshot.class)) {
+            // 本地快照文件中没有这次的增量，删除后下次重启从数据库加载
+            touchSnapshotVersion(cacheClass);
+            LocalSnapshotStore.delete(cacheClass);
+        }
+        // 本节点立即生效
+        applyDelta(cacheClass, getSnapshot(cacheClass), deltaVersion, keys);
+    }
+
+    /**
+     * 本地快照：读取zk中增量节点的版本，节点不存在或读取失败时返回空字符串
+     */
+    private static String getSnapshotDeltaVersion(Class<? extends BaseCache> cacheClass) {
+        try {
+            Delta delta = readDelta(getDeltaPath(getCacheConfig(cacheClass)), null);
+            return delta == null ? "" : String.valueOf(delta.version);
+        } catch (Exception e) {
+            log.warn("读取本地快照的刷新版本失败, cacheId='" + cacheClass.getName() + "'", e);
+            return "";
+        }
+    }
+
+    /**
+     * 本地快照：更新zk中增量节点的版本，使其他节点的快照文件过期（本地缓存没有节点检查增量，只用到版本）
+     */
+    private static void touchSnapshotVersion(Class<? extends BaseCache> cacheClass) {
+        if (!cacheClass.isAnnotationPresent(LocalSnapshot.class)) {
+            return;
+        }
+        try {
+            publishDelta(getDeltaPath(getCacheConfig(cacheClass)), null);
+        } catch (Exception e) {
+            log.warn("更新本地快照的刷新版本失败, cacheId='" + cacheClass.getName() + "'", e);
+        }
+    }
+
+    static void startDeltaChecker() {
+        if (deltaChecker == null) {
+            synchronized (BaseCache.class) {
+                if (deltaChecker == null) {
+                    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, "easyframe-cache-delta");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor.scheduleWithFixedDelay(BaseCache::checkDeltas, 0, DELTA_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                    deltaChecker = executor;
+                }
+            }
+        }
+    }
+
+    /**
+     * 分布式缓存：由后台线程定时读取zk中的增量，版本变化时从数据库加载并应用到本地快照
+     * 同时检查部分缓存（见{@link LruCache}）其他节点发布的失效主键
+     */
+    private static void checkDeltas() {
+        for (Class<? extends BaseCache> cacheClass : DELTA_WATCHED) {
+            CacheSnapshot<DataContainer> snapshot = peekSnapshot(cacheClass);
+            if (snapshot == null) {
+                continue;
+            }
+            try {
+                Delta delta = readDelta(getDeltaPath(getCacheConfig(cacheClass)), null);
+                if (delta == null || delta.version == snapshot.getDeltaVersion()) {
+                    continue;
+                }
+                inTransaction(() -> applyDelta(cacheClass, snapshot, delta.version, delta.keys));
+            } catch (Throwable e) {
+                log.error("检查缓存增量失败, cacheId='" + cacheClass.getName() + "'", e);
+            }
+        }
+        LruCache.checkDeltas();
+    }
+
+    /**
+     * 在单独的事务中执行（后台线程中查询数据库）
+     */
+    private static void inTransaction(LambdaExceptionUtil.SupplierWithExceptions<?, Exception> supplier) throws Exception {
+        Session session = ServiceManager.getSession();
+        session.startTransaction();
+        try {
+            supplier.get();
+            session.commitTransaction();
+        } catch (Exception e) {
+            try {
+                session.rollbackTransaction();
+            } catch (Exception ex) {
+                log.error(ex);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 从数据库加载指定主键的数据，与当前发布的快照合并生成新快照后替换
+     * 加载数据库在锁外进行；合并时以最新发布的快照为准（按主键重新加载是幂等的）
+     */
+    @SuppressWarnings("unchecked")
+    private static <K extends DataContainer> CacheSnapshot<K> applyDelta(Class<? extends BaseCache> cacheClass, CacheSnapshot<K> snapshot,
+                                                                         long deltaVersion, String[] keys) throws Exception {
+        long startTime = System.currentTimeMillis();
+        Class<? extends DataContainer> boClass = ServiceUtil.get(getInstance(cacheClass).daoClass).getBoClass();
+        String keyName = boClass.newInstance().getObjectType().getMainAttr();
+        Map<String, DataContainer> loaded = new HashMap<>(keys.length);
+        if (keys.length > 0) {
+            for (DataContainer bean : DaoEngine.getBeansIn(boClass, keyName, Arrays.asList(keys))) {
+                loaded.put(bean.getAsString(keyName), bean);
+            }
+        }
+
+        ReentrantLock lock = BUILD_LOCKS.computeIfAbsent(cacheClass, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            AtomicReference<CacheSnapshot> reference = SNAPSHOTS.computeIfAbsent(cacheClass, k -> new AtomicReference<>());
+            CacheSnapshot<K> current = reference.get();
+            if (current != null) {
+                // 其他线程已生成了更新的快照，在其基础上应用
+                snapshot = current;
+            }
+            Set<String> keySet = new HashSet<>(Arrays.asList(keys));
+            CacheSnapshot<K> newSnapshot;
+            if (snapshot.isColumnar()) {
+                // 列式存储直接按行复制列数组，不生成bean
+                ColumnStore<K> store = snapshot.getColumnStore().patch(keyName, keySet, loaded);
+                newSnapshot = newSnapshot(cacheClass, snapshot.getSource(), store, deltaVersion);
+            } else {
+                K[] data = snapshot.getData();
+                Map<String, DataContainer> changed = new HashMap<>(loaded);
+                List<DataContainer> result = new ArrayList<>(data.length + changed.size());
+                for (K bean : data) {
+                    String key = bean.getAsString(keyName);
+                    if (!keySet.contains(key)) {
+                        result.add(bean);
+                    } else if (changed.containsKey(key)) {
+                        // 原位置替换，保持数据顺序
+                        result.add(changed.remove(key));
+                    }
+                }
+                // 剩下的是新增的数据
+                result.addAll(changed.values());
+                K[] newData = result.toArray((K[]) Array.newInstance(snapshot.getBoClass(), 0));
+                newSnapshot = newSnapshot(cacheClass, snapshot.getSource(), newData, deltaVersion);
+            }
+            reference.set(newSnapshot);
+            CacheMetrics.recordRefresh(cacheClass, false, keys.length, System.currentTimeMillis() - startTime);
+            log.info(String.format("缓存增量已应用, cacheId='%s', 主键数：%d，数据量：%d -> %d", cacheClass.getName(), keys.length, snapshot.size(), newSnapshot.size()));
+            return newSnapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 与尚未被全量刷新合并的增量一起发布，保证刚启动或漏检的节点也能补齐
+     * 按节点的数据版本更新，其他节点同时发布导致版本不一致时重新读取合并
+     *
+     * @param path zk节点
+     * @param keys 本次变更的主键，为null时清空之前的主键（只更新版本）
+     * @return 发布的增量（包含合并的主键），合并后主键数超过{@link #MAX_DELTA_SIZE}时返回null
+     */
+    static Delta publishDelta(String path, String[] keys) throws Exception {
+        for (int i = 0; ; i++) {
+            Stat stat = new Stat();
+            Delta delta = readDelta(path, stat);
+            Set<String> keySet = new LinkedHashSet<>();
+            if (keys != null) {
+                keySet.addAll(Arrays.asList(keys));
+                if (delta != null) {
+                    keySet.addAll(Arrays.asList(delta.keys));
+                }
+            }
+            if (keySet.size() > MAX_DELTA_SIZE) {
+                return null;
+            }
+            long deltaVersion = Math.max(System.currentTimeMillis(), delta == null ? 0 : delta.version + 1);
+            Delta newDelta = new Delta(deltaVersion, keySet.toArray(new String[0]));
+            if (writeDelta(path, stat, newDelta)) {
+                return newDelta;
+            }
+            if (i >= MAX_DELTA_RETRY) {
+                throw new RuntimeException("发布缓存增量冲突次数过多：" + path);
+            }
+        }
+    }
+
+    private static String getDeltaPath(Cache cache) {
+        return String.format(DELTA_PATH, cache.getDataType(), cache.getId());
+    }
+
+    /**
+     * 读取zk中的增量信息，格式：{"version":增量版本,"keys":["主键1","主键2"]}
+     *
+     * @param path zk节点
+     * @param stat 用于保存节点的状态（数据版本），不需要时传null
+     * @return 增量信息，没有增量时返回null
+     */
+    static Delta readDelta(String path, Stat stat) throws Exception {
+        CuratorZkClient zkClient = ZkClient.getInstance().getClient();
+        byte[] bytes = stat == null ? zkClient.getData(path) : zkClient.getCuratorFramework().getData().storingStatIn(stat).forPath(path);
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        Matcher matcher = PATTERN_DELTA.matcher(new String(bytes, StandardCharsets.UTF_8));
+        return matcher.find() ? new Delta(Long.parseLong(matcher.group(1)), parseKeys(matcher.group(2))) : null;
+    }
+
+    /**
+     * 写入增量信息，只有节点的数据版本与读取时一致才写入
+     *
+     * @param path  zk节点
+     * @param stat  读取时的节点状态
+     * @param delta 增量信息
+     * @return 是否写入成功，节点已被其他节点修改时返回false
+     */
+    private static boolean writeDelta(String path, Stat stat, Delta delta) throws Exception {
+        StringBuilder data = new StringBuilder("{\"version\":").append(delta.version).append(",\"keys\":[");
+        for (int i = 0; i < delta.keys.length; i++) {
+            if (i > 0) {
+                data.append(',');
+            }
+            data.append('"');
+            for (char c : delta.keys[i].toCharArray()) {
+                if (c == '"' || c == '\\') {
+                    data.append('\\').append(c);
+                } else if (c < 0x20) {
+                    data.append(String.format("\\u%04x", (int) c));
+                } else {
+                    data.append(c);
+                }
+            }
+            data.append('"');
+        }
+        data.append("]}");
+        try {
+            ZkClient.getInstance().getClient().getCuratorFramework().setData().withVersion(stat.getVersion())
+                    .forPath(path, data.toString().getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (KeeperException.BadVersionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 解析JSON字符串数组，如：["1","a\"b"]
+     */
+    private static String[] parseKeys(String json) {
+        List<String> keys = new ArrayList<>();
+        StringBuilder key = null;
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (key == null) {
+                if (c == '"') {
+                    key = new StringBuilder();
+                }
+                continue;
+            }
+            if (c == '"') {
+                keys.add(key.toString());
+                key = null;
+            } else if (c == '\\' && i + 1 < json.length()) {
+                char next = json.charAt(++i);
+                if (next == 'u' && i + 4 < json.length()) {
+                    key.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+                    i += 4;
+                } else {
+                    key.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next == 't' ? '\t' : next);
+                }
+            } else {
+                key.append(c);
+            }
+        }
+        return keys.toArray(new String[0]);
+    }
+
+    /**
+     * zk中的增量信息
+     */
+    static class Delta {
+        final long version;
+        final String[] keys;
+
+        private Delta(long version, String[] keys) {
+            this.version = version;
+            this.keys = keys;
+        }
+    }
+
+    /**
+     * 获取缓存的xml配置
+     */
+    private static Cache getCacheConfig(Class<? extends BaseCache> cacheClass) throws Exception {
+        Cache cache = CACHE_CONFIGS.get(cacheClass);
+        if (cache == null) {
+            String cacheId = cacheClass.getName();
+            Caches caches = XMLHelper.getInstance().getCaches();
+            cache = Stream.of(caches.getCaches()).filter(v -> v.getId().equals(cacheId)).findFirst().get();
+            CACHE_CONFIGS.put(cacheClass, cache);
+        }
+        return cache;
+    }
+
+    private static boolean isDistributed(Class<? extends BaseCache> cacheClass) throws Exception {
+        return CacheSource.AICACHE == CacheSource.eval(getCacheConfig(cacheClass).getSource());
+    }
+
+    /**
+     * 缓存类未重写getData()时，缓存内容为整表数据，才能按主键增量刷新
+     */
+    private static boolean isDeltaSupported(Class<? extends BaseCache> cacheClass) {
+        try {
+            return cacheClass.getMethod("getData").getDeclaringClass() == BaseCache.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static BaseCache<?> getInstance(Class<? extends BaseCache> cacheClass) throws Exception {
+        Object instance = CacheFactory._getCacheInstances().get(cacheClass);
+        return instance != null ? (BaseCache<?>) instance : cacheClass.newInstance();
     }
 
 }
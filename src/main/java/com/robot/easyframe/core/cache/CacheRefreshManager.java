@@ -0,0 +1,288 @@
+package com.robot.easyframe.core.cache;
+
+import com.ai.appframe2.common.ServiceManager;
+import com.ai.appframe2.common.Session;
+import com.ai.appframe2.complex.transaction.interfaces.IMutilTransactionDatasource;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 缓存刷新管理
+ * <p>
+ * 1.事务中的刷新请求先记录在当前线程中，按缓存类合并主键，事务提交后统一执行一次，回滚则丢弃；
+ * 2.不在事务中时立即刷新；
+ * 3.同一个缓存两次刷新的间隔小于{@link #setMinInterval(long)}时，后面的请求合并后延迟执行
+ * <p>
+ * 注：事务结束的通知来自{@link CacheTransactionImpl}，需在appframe.xml中将其配置为事务实现，
+ * 未配置时无法感知事务结束，刷新请求将立即执行
+ *
+ * @author luozhan
+ * @date 2020-03
+ * @see BaseCache#refresh(Class, String...)
+ */
+public class CacheRefreshManager {
+    private static Log log = LogFactory.getLog(CacheRefreshManager.class);
+
+    /**
+     * 全量刷新标记
+     */
+    private static final Set<String> FULL_REFRESH = Collections.unmodifiableSet(new HashSet<>());
+
+    /**
+     * 当前事务中待刷新的缓存，value为待刷新的主键
+     */
+    private static final ThreadLocal<Map<Class<? extends BaseCache>, Set<String>>> PENDING = ThreadLocal.withInitial(LinkedHashMap::new);
+
+    /**
+     * 当前事务结束后（提交或回滚）要执行的任务
+     */
+    private static final ThreadLocal<List<Consumer<Boolean>>> PENDING_TASKS = ThreadLocal.withInitial(ArrayList::new);
+
+    /**
+     * 等待延迟执行的刷新
+     */
+    private static final Map<Class<? extends BaseCache>, Set<String>> DELAYED = new ConcurrentHashMap<>();
+
+    private static final Map<Class<? extends BaseCache>, Long> LAST_REFRESH_TIME = new ConcurrentHashMap<>();
+
+    private static final Object LOCK = new Object();
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "easyframe-cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 同一个缓存两次刷新的最小间隔（毫秒），0表示不限制
+     */
+    private static volatile long minInterval = 0;
+
+    private static volatile boolean warned = false;
+
+    /**
+     * 设置同一个缓存两次刷新的最小间隔，间隔内的刷新请求将合并后延迟执行
+     *
+     * @param millis 毫秒，0表示不限制
+     */
+    public static void setMinInterval(long millis) {
+        minInterval = millis;
+    }
+
+    /**
+     * 登记刷新请求
+     * 当前在事务中时，等事务提交后再执行；否则立即执行
+     *
+     * @param cacheClass 缓存class
+     * @param keys       变更数据的主键，不传表示全量刷新
+     * @throws Exception
+     */
+    public static void register(Class<? extends BaseCache> cacheClass, String... keys) throws Exception {
+        Set<String> keySet = keys == null || keys.length == 0 ? FULL_REFRESH : new LinkedHashSet<>(Arrays.asList(keys));
+        if (isDeferring()) {
+            PENDING.get().merge(cacheClass, keySet, CacheRefreshManager::merge);
+            return;
+        }
+        submit(cacheClass, keySet);
+    }
+
+    /**
+     * 登记事务结束后（提交或回滚）要执行的任务，如部分缓存的失效
+     * 当前不在事务中时立即执行（视为已提交）
+     *
+     * @param task 任务，入参为事务是否已提交
+     */
+    public static void runAfterTransaction(Consumer<Boolean> task) {
+        if (isDeferring()) {
+            PENDING_TASKS.get().add(task);
+        } else {
+            task.accept(true);
+        }
+    }
+
+    /**
+     * 事务提交后调用：执行当前事务中登记的刷新，每个缓存的刷新在单独的事务中执行
+     */
+    static void afterCommit() {
+        runPendingTasks(true);
+        Map<Class<? extends BaseCache>, Set<String>> pending = PENDING.get();
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Class<? extends BaseCache>, Set<String>> copy = new LinkedHashMap<>(pending);
+        pending.clear();
+        copy.forEach((cacheClass, keys) -> {
+            try {
+                submit(cacheClass, keys);
+            } catch (Exception e) {
+                log.error("事务提交后刷新缓存失败, cacheId='" + cacheClass.getName() + "'", e);
+            }
+        });
+    }
+
+    /**
+     * 事务回滚后调用：丢弃当前事务中登记的刷新
+     */
+    static void afterRollback() {
+        runPendingTasks(false);
+        PENDING.get().clear();
+    }
+
+    private static void runPendingTasks(boolean committed) {
+        List<Consumer<Boolean>> tasks = PENDING_TASKS.get();
+        if (tasks.isEmpty()) {
+            return;
+        }
+        List<Consumer<Boolean>> copy = new ArrayList<>(tasks);
+        tasks.clear();
+        for (Consumer<Boolean> task : copy) {
+            try {
+                task.accept(committed);
+            } catch (Exception e) {
+                log.error("事务结束后执行任务失败", e);
+            }
+        }
+    }
+
+    /**
+     * 执行刷新，距上次刷新不足最小间隔时合并到延迟任务中
+     */
+    private static void submit(Class<? extends BaseCache> cacheClass, Set<String> keys) throws Exception {
+        if (minInterval <= 0) {
+            execute(cacheClass, keys);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long delay;
+        synchronized (LOCK) {
+            if (DELAYED.containsKey(cacheClass)) {
+                // 已有等待执行的刷新任务，合并进去即可
+                DELAYED.merge(cacheClass, keys, CacheRefreshManager::merge);
+                return;
+            }
+            Long lastTime = LAST_REFRESH_TIME.get(cacheClass);
+            delay = lastTime == null ? 0 : lastTime + minInterval - now;
+            if (delay <= 0) {
+                LAST_REFRESH_TIME.put(cacheClass, now);
+            } else {
+                DELAYED.put(cacheClass, keys);
+            }
+        }
+        if (delay <= 0) {
+            execute(cacheClass, keys);
+        } else {
+            String dataSource = getCurDataSource();
+            SCHEDULER.schedule(() -> executeDelayed(cacheClass, dataSource), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void executeDelayed(Class<? extends BaseCache> cacheClass, String dataSource) {
+        Set<String> keys;
+        synchronized (LOCK) {
+            keys = DELAYED.remove(cacheClass);
+            LAST_REFRESH_TIME.put(cacheClass, System.currentTimeMillis());
+        }
+        if (keys == null) {
+            return;
+        }
+        try {
+            execute(cacheClass, keys, dataSource);
+        } catch (Exception e) {
+            log.error("延迟刷新缓存失败, cacheId='" + cacheClass.getName() + "'", e);
+        }
+    }
+
+    private static void execute(Class<? extends BaseCache> cacheClass, Set<String> keys) throws Exception {
+        execute(cacheClass, keys, getCurDataSource());
+    }
+
+    /**
+     * 执行刷新，当前不在事务中时（如事务提交后、延迟任务中）开启单独的事务执行
+     */
+    private static void execute(Class<? extends BaseCache> cacheClass, Set<String> keys, String dataSource) throws Exception {
+        if (isInTransaction()) {
+            refresh(cacheClass, keys);
+            return;
+        }
+        Session session = ServiceManager.getSession();
+        try {
+            session.startTransaction();
+            if (dataSource != null) {
+                ((IMutilTransactionDatasource) session).setCurDataSource(dataSource);
+            }
+            refresh(cacheClass, keys);
+            session.commitTransaction();
+        } catch (Exception e) {
+            try {
+                session.rollbackTransaction();
+            } catch (Exception ex) {
+                log.error(ex);
+            }
+            throw e;
+        }
+    }
+
+    private static void refresh(Class<? extends BaseCache> cacheClass, Set<String> keys) throws Exception {
+        if (keys == FULL_REFRESH) {
+            BaseCache.refreshNow(cacheClass);
+        } else {
+            BaseCache.refreshNow(cacheClass, keys.toArray(new String[0]));
+        }
+    }
+
+    private static Set<String> merge(Set<String> oldKeys, Set<String> newKeys) {
+        if (oldKeys == FULL_REFRESH || newKeys == FULL_REFRESH) {
+            return FULL_REFRESH;
+        }
+        Set<String> result = new LinkedHashSet<>(oldKeys);
+        result.addAll(newKeys);
+        return result;
+    }
+
+    /**
+     * 当前线程是否在事务中，且事务结束时会通知本类
+     */
+    static boolean isDeferring() {
+        Session session;
+        try {
+            session = ServiceManager.getSession();
+        } catch (Exception e) {
+            return false;
+        }
+        if (session == null || !session.isStartTransaction()) {
+            return false;
+        }
+        if (!(session instanceof CacheTransactionImpl)) {
+            if (!warned) {
+                warned = true;
+                log.warn("事务实现未配置为" + CacheTransactionImpl.class.getName() + "，事务中的缓存刷新将立即执行");
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isInTransaction() {
+        try {
+            Session session = ServiceManager.getSession();
+            return session != null && session.isStartTransaction();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static String getCurDataSource() {
+        try {
+            return ((IMutilTransactionDatasource) ServiceManager.getSession()).getCurDataSource();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
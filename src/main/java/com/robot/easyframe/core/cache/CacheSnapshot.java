@@ -0,0 +1,423 @@
+package com.robot.easyframe.core.cache;
+
+import com.ai.appframe2.bo.DataContainer;
+import com.ai.appframe2.common.DataContainerInterface;
+import com.robot.easyframe.annotation.CacheIndex;
+import com.robot.easyframe.util.Convert;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * 缓存快照
+ * 包装某个缓存在本节点的数据、索引，以及这份数据对应的版本信息
+ * 快照创建后不再修改，数据变更时生成新快照整体替换，读取方无需加锁（注意不要修改getData()、lookup()返回的数组）
+ *
+ * @author luozhan
+ * @date 2020-03
+ * @see BaseCache#getSnapshot(Class)
+ */
+public class CacheSnapshot<T extends DataContainer> {
+    /**
+     * CacheFactory中的原始缓存对象，用于判断框架是否重新加载了整表缓存
+     */
+    private final Object source;
+    /**
+     * 当前数据（原始数据 + 已应用的增量），列式存储时为null
+     */
+    private final T[] data;
+    /**
+     * 列式存储的当前数据，非列式存储时为null
+     */
+    private final ColumnStore<T> columns;
+    /**
+     * 快照版本号，每生成一个新快照递增
+     */
+    private final long version;
+    /**
+     * 已应用的增量版本，-1表示未应用任何增量
+     */
+    private final long deltaVersion;
+    /**
+     * 哈希索引，结构：属性名 -> (属性值 -> 数据下标数组（升序）)
+     */
+    private final Map<String, Map<String, int[]>> hashIndexes;
+    /**
+     * 有序索引，结构：属性名 -> 有序索引
+     */
+    private final Map<String, SortedIndex> sortedIndexes;
+    /**
+     * 转换成long的属性值，结构：(num|time):属性名 -> 属性值，
+     * 有序索引的属性在加载时转换，其他属性在第一次范围查询时转换，同一快照只转换一次
+     */
+    private final Map<String, LongValues> longValues = new ConcurrentHashMap<>();
+
+    /**
+     * 数字属性不能无损转换成long的标记（ConcurrentHashMap不能保存null）
+     */
+    private static final LongValues NOT_LONG = new LongValues(new long[0], new BitSet(0));
+
+    private static final BigDecimal MIN_LONG = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal MAX_LONG = BigDecimal.valueOf(Long.MAX_VALUE);
+    /**
+     * 估算的内存占用，首次获取时计算
+     */
+    private volatile long estimatedSize = -1;
+
+    CacheSnapshot(Object source, T[] data, long version, long deltaVersion, CacheIndex indexConfig) {
+        this(source, data, null, version, deltaVersion, indexConfig);
+    }
+
+    CacheSnapshot(Object source, ColumnStore<T> columns, long version, long deltaVersion, CacheIndex indexConfig) {
+        this(source, null, columns, version, deltaVersion, indexConfig);
+    }
+
+    private CacheSnapshot(Object source, T[] data, ColumnStore<T> columns, long version, long deltaVersion, CacheIndex indexConfig) {
+        this.source = source;
+        this.data = data;
+        this.columns = columns;
+        this.version = version;
+        this.deltaVersion = deltaVersion;
+        this.hashIndexes = new HashMap<>();
+        this.sortedIndexes = new HashMap<>();
+        if (indexConfig != null) {
+            for (String field : indexConfig.value()) {
+                hashIndexes.put(field, buildHashIndex(field));
+            }
+            for (String field : indexConfig.sorted()) {
+                SortedIndex index = buildSortedIndex(field);
+                if (index != null) {
+                    sortedIndexes.put(field, index);
+                }
+            }
+        }
+    }
+
+    private Map<String, int[]> buildHashIndex(String field) {
+        Map<String, List<Integer>> positions = new HashMap<>();
+        IntFunction<DataContainerInterface> reader = newReader();
+        for (int i = 0, size = size(); i < size; i++) {
+            String value = reader.apply(i).getAsString(field);
+            if (value != null) {
+                positions.computeIfAbsent(value, k -> new ArrayList<>()).add(i);
+            }
+        }
+        Map<String, int[]> index = new HashMap<>(positions.size() * 4 / 3 + 1);
+        positions.forEach((value, list) -> index.put(value, list.stream().mapToInt(Integer::intValue).toArray()));
+        return index;
+    }
+
+    /**
+     * 通过哈希索引获取属性值在values中的数据下标
+     *
+     * @param field  属性名
+     * @param values 属性值（等值查询传一个，in查询传多个）
+     * @return 升序的数据下标，该属性没有索引时返回null
+     */
+    public int[] lookup(String field, Collection<String> values) {
+        Map<String, int[]> index = hashIndexes.get(field);
+        if (index == null) {
+            return null;
+        }
+        if (values.size() == 1) {
+            int[] positions = index.get(values.iterator().next());
+            return positions == null ? new int[0] : positions;
+        }
+        int[][] parts = values.stream().distinct().map(index::get).filter(Objects::nonNull).toArray(int[][]::new);
+        int[] result = Arrays.stream(parts).flatMapToInt(Arrays::stream).toArray();
+        // 保持数据在缓存中的原始顺序
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * 获取快照中的属性是否建立了哈希索引
+     */
+    public boolean hasHashIndex(String field) {
+        return hashIndexes.containsKey(field);
+    }
+
+    /**
+     * 获取快照中的属性是否建立了有序索引
+     */
+    public boolean hasSortedIndex(String field) {
+        return sortedIndexes.containsKey(field);
+    }
+
+    /**
+     * 通过有序索引获取属性值在指定范围内的数据下标（二分查找）
+     * 边界类型须与索引类型一致：数字和时间索引传Long（时间为毫秒数），字符串索引传String
+     *
+     * @param field          属性名
+     * @param lower          下界，null表示不限
+     * @param lowerInclusive 是否包含下界
+     * @param upper          上界，null表示不限
+     * @param upperInclusive 是否包含上界
+     * @return 升序的数据下标，该属性没有有序索引或边界类型不匹配时返回null
+     */
+    public int[] lookupRange(String field, Comparable<?> lower, boolean lowerInclusive, Comparable<?> upper, boolean upperInclusive) {
+        SortedIndex index = sortedIndexes.get(field);
+        if (index == null || !index.accept(lower) || !index.accept(upper)) {
+            return null;
+        }
+        int from = lower == null ? 0 : index.search(lower, !lowerInclusive);
+        int to = upper == null ? index.positions.length : index.search(upper, upperInclusive);
+        if (from >= to) {
+            return new int[0];
+        }
+        int[] result = Arrays.copyOfRange(index.positions, from, to);
+        // 保持数据在缓存中的原始顺序
+        Arrays.sort(result);
+        return result;
+    }
+
+    private SortedIndex buildSortedIndex(String field) {
+        int size = size();
+        IntFunction<DataContainerInterface> reader = newReader();
+        Object sample = null;
+        for (int i = 0; i < size && sample == null; i++) {
+            sample = reader.apply(i).get(field);
+        }
+        SortedIndex index = new SortedIndex();
+        List<Integer> positions = new ArrayList<>(size);
+        if (sample instanceof Number || sample instanceof Date) {
+            LongValues values = getLongValues(field, sample instanceof Date);
+            if (values == null) {
+                // 有小数的数字不建有序索引，范围查询时逐条比较
+                return null;
+            }
+            for (int i = 0; i < size; i++) {
+                if (!values.isNull(i)) {
+                    positions.add(i);
+                }
+            }
+            positions.sort(Comparator.comparingLong(values::get));
+            index.positions = positions.stream().mapToInt(Integer::intValue).toArray();
+            index.longKeys = Arrays.stream(index.positions).mapToLong(values::get).toArray();
+        } else {
+            String[] values = new String[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = reader.apply(i).getAsString(field);
+                if (values[i] != null) {
+                    positions.add(i);
+                }
+            }
+            positions.sort(Comparator.comparing(i -> values[i]));
+            index.positions = positions.stream().mapToInt(Integer::intValue).toArray();
+            index.strKeys = Arrays.stream(index.positions).mapToObj(i -> values[i]).toArray(String[]::new);
+        }
+        return index;
+    }
+
+    /**
+     * 获取属性转换成long后的值，用于数字和时间的范围查询
+     * 列式存储的整数列、时间列直接使用列中的值，其他情况按Convert.toMillis或整数逐条转换一次；
+     * 数字属性中有小数或超出long范围的值时不能无损转换，返回null，由调用方按BigDecimal比较
+     *
+     * @param field 属性名
+     * @param time  true-转换成时间的毫秒数，false-转换成数字
+     * @return 属性值，无法转换的值视为null；数字属性不全是整数时返回null
+     */
+    public LongValues getLongValues(String field, boolean time) {
+        LongValues result = longValues.computeIfAbsent((time ? "time:" : "num:") + field, key -> {
+            LongValues values = columns == null ? null : columns.getLongValues(field, time);
+            return values != null ? values : buildLongValues(field, time);
+        });
+        return result == NOT_LONG ? null : result;
+    }
+
+    private LongValues buildLongValues(String field, boolean time) {
+        int size = size();
+        IntFunction<DataContainerInterface> reader = newReader();
+        long[] values = new long[size];
+        BitSet nulls = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            Object value = reader.apply(i).get(field);
+            Long key;
+            if (time) {
+                key = Convert.toMillis(value);
+            } else {
+                BigDecimal decimal = Convert.toDecimal(value);
+                if (decimal == null) {
+                    key = null;
+                } else if (decimal.signum() == 0 || decimal.stripTrailingZeros().scale() <= 0 && decimal.compareTo(MIN_LONG) >= 0 && decimal.compareTo(MAX_LONG) <= 0) {
+                    key = decimal.longValue();
+                } else {
+                    // 有小数或超出long范围，转换成long会截断
+                    return NOT_LONG;
+                }
+            }
+            if (key == null) {
+                nulls.set(i);
+            } else {
+                values[i] = key;
+            }
+        }
+        return new LongValues(values, nulls);
+    }
+
+    /**
+     * 数字或数字字符串转换成BigDecimal，无法转换时返回null
+     */
+    private static BigDecimal toDecimal(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+        try {
+            return new BigDecimal(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 有序索引：按属性值排好序的数据下标，以及对应的属性值
+     */
+    private static class SortedIndex {
+        private int[] positions;
+        /**
+         * 数字或时间（毫秒数）类型的属性值，与strKeys二选一
+         */
+        private long[] longKeys;
+        private String[] strKeys;
+
+        private boolean accept(Comparable<?> bound) {
+            return bound == null || (longKeys != null ? bound instanceof Long : bound instanceof String);
+        }
+
+        /**
+         * 二分查找
+         *
+         * @param after true-返回第一个大于bound的位置，false-返回第一个大于等于bound的位置
+         */
+        private int search(Comparable<?> bound, boolean after) {
+            int low = 0, high = positions.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int compare = longKeys != null ?
+                        Long.compare(longKeys[mid], (Long) bound) :
+                        strKeys[mid].compareTo((String) bound);
+                if (compare < 0 || (after && compare == 0)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    Object getSource() {
+        return source;
+    }
+
+    /**
+     * 获取全部数据
+     * 注意：列式存储时会生成全部bean，数据量大时应使用{@link #size()}和{@link #get(int)}按需读取
+     */
+    public T[] getData() {
+        return data != null ? data : columns.toArray();
+    }
+
+    /**
+     * 数据条数
+     */
+    public int size() {
+        return data != null ? data.length : columns.size();
+    }
+
+    /**
+     * 获取指定下标的数据，列式存储时会生成新的bean
+     */
+    public T get(int position) {
+        return data != null ? data[position] : columns.get(position);
+    }
+
+    /**
+     * 创建按下标读取数据的读取器，只用于读取属性值（过滤、建索引等），不要保留读取到的对象
+     * 列式存储时读取器复用同一个行视图，不会生成bean，非线程安全，每个线程需单独创建
+     */
+    public IntFunction<DataContainerInterface> newReader() {
+        if (data != null) {
+            return i -> data[i];
+        }
+        ColumnStore.RowView view = columns.newView();
+        return view::at;
+    }
+
+    /**
+     * 估算数据和索引占用的内存（字节），bean数组按抽样估算，结果仅供参考
+     */
+    public long estimateSize() {
+        if (estimatedSize < 0) {
+            long result = data != null ? estimateBeans() : columns.estimateSize();
+            for (Map<String, int[]> index : hashIndexes.values()) {
+                result += 4L * size() + 64L * index.size();
+            }
+            // 下标 + 属性值
+            result += 12L * size() * sortedIndexes.size();
+            if (data != null) {
+                // 列式存储时直接引用列中的值，不重复计算
+                for (LongValues values : longValues.values()) {
+                    result += values.estimateSize();
+                }
+            }
+            estimatedSize = result;
+        }
+        return estimatedSize;
+    }
+
+    private long estimateBeans() {
+        if (data.length == 0) {
+            return 0;
+        }
+        int step = Math.max(1, data.length / 100), count = 0;
+        long sampled = 0;
+        for (int i = 0; i < data.length; i += step, count++) {
+            // bean对象及其属性map
+            sampled += 96;
+            for (Object value : data[i].getProperties().values()) {
+                sampled += 48 + ColumnStore.estimateValue(value);
+            }
+        }
+        return 4L * data.length + sampled * data.length / count;
+    }
+
+    /**
+     * 是否为列式存储
+     */
+    public boolean isColumnar() {
+        return columns != null;
+    }
+
+    /**
+     * 数据对应的bean类型
+     */
+    @SuppressWarnings("unchecked")
+    public Class<T> getBoClass() {
+        return data != null ? (Class<T>) data.getClass().getComponentType() : columns.getBoClass();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    long getDeltaVersion() {
+        return deltaVersion;
+    }
+
+    /**
+     * 列式存储的数据，非列式存储时返回null
+     */
+    ColumnStore<T> getColumnStore() {
+        return columns;
+    }
+}
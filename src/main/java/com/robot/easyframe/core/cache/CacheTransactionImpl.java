@@ -0,0 +1,41 @@
+package com.robot.easyframe.core.cache;
+
+import com.ai.appframe2.complex.transaction.impl.LocalMutilTransactionImpl;
+
+/**
+ * 带缓存刷新回调的事务实现
+ * 在框架的事务提交/回滚后通知{@link CacheRefreshManager}：提交后执行事务中登记的缓存刷新，回滚后丢弃
+ * <p>
+ * 使用方式：将appframe.xml中事务实现的配置替换为本类，如：
+ * <pre>
+ * &lt;transaction&gt;
+ *     &lt;clazz name="com.robot.easyframe.core.cache.CacheTransactionImpl"/&gt;
+ * &lt;/transaction&gt;
+ * </pre>
+ * 未配置时框架无法感知事务结束，缓存刷新请求将立即执行
+ *
+ * @author luozhan
+ * @date 2020-03
+ */
+public class CacheTransactionImpl extends LocalMutilTransactionImpl {
+
+    @Override
+    public void commitTransaction() throws Exception {
+        super.commitTransaction();
+        // 当前线程仍在事务中时，等事务全部结束后再执行
+        if (!isStartTransaction()) {
+            CacheRefreshManager.afterCommit();
+        }
+    }
+
+    @Override
+    public void rollbackTransaction() throws Exception {
+        try {
+            super.rollbackTransaction();
+        } finally {
+            if (!isStartTransaction()) {
+                CacheRefreshManager.afterRollback();
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.robot.easyframe.core.cache;
+
+import com.ai.appframe2.common.ServiceManager;
+import com.ai.appframe2.common.Session;
+import com.ai.appframe2.complex.xml.XMLHelper;
+import com.ai.appframe2.complex.xml.cfg.caches.Cache;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缓存预热
+ * <p>
+ * 应用启动时调用{@link #start(int)}，从缓存xml配置中找出所有BaseCache的子类，按指定并发数并行加载（包括建立快照和索引），
+ * 避免部署后的第一批请求遇到冷缓存；就绪检查可调用{@link #isReady()}或{@link #awaitReady(long, TimeUnit)}等待预热完成，
+ * 有缓存加载失败时不会就绪，失败的缓存在后台按退避时间重试（或已被其他请求加载），全部成功后变为就绪
+ *
+ * @author luozhan
+ * @date 2020-03
+ */
+public class CacheWarmUp {
+    private static Log log = LogFactory.getLog(CacheWarmUp.class);
+
+    /**
+     * 默认并发数
+     */
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    /**
+     * 加载失败后首次重试的间隔（毫秒），之后每次翻倍
+     */
+    private static final long RETRY_DELAY = 1000;
+
+    /**
+     * 重试间隔的上限（毫秒）
+     */
+    private static final long MAX_RETRY_DELAY = 60000;
+
+    private static final Map<String, Result> RESULTS = new ConcurrentHashMap<>();
+
+    private static volatile CountDownLatch latch;
+
+    /**
+     * 使用默认并发数开始预热
+     *
+     * @throws Exception
+     */
+    public static void start() throws Exception {
+        start(DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * 开始预热（异步执行，重复调用时只有第一次生效）
+     *
+     * @param parallelism 最多同时加载的缓存数
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized void start(int parallelism) throws Exception {
+        if (latch != null) {
+            return;
+        }
+        List<Class<? extends BaseCache>> cacheClasses = new ArrayList<>();
+        // 缓存类在应用的类加载器中，框架包所在的类加载器（如容器的共享库）可能加载不到
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = CacheWarmUp.class.getClassLoader();
+        }
+        for (Cache cache : XMLHelper.getInstance().getCaches().getCaches()) {
+            try {
+                Class<?> cacheClass = Class.forName(cache.getId(), false, classLoader);
+                if (BaseCache.class.isAssignableFrom(cacheClass)) {
+                    cacheClasses.add((Class<? extends BaseCache>) cacheClass);
+                }
+            } catch (ClassNotFoundException e) {
+                log.warn("缓存预热：找不到缓存类" + cache.getId());
+            }
+        }
+        latch = new CountDownLatch(cacheClasses.size());
+        if (cacheClasses.isEmpty()) {
+            return;
+        }
+        log.info(String.format("开始预热缓存，缓存数：%d，并发数：%d", cacheClasses.size(), parallelism));
+        long startTime = System.currentTimeMillis();
+        AtomicInteger threadNo = new AtomicInteger(), remaining = new AtomicInteger(cacheClasses.size());
+        // 尚未加载成功的缓存数，全部成功后关闭线程池
+        AtomicInteger unloaded = new AtomicInteger(cacheClasses.size());
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(Math.max(1, Math.min(parallelism, cacheClasses.size())), r -> {
+            Thread thread = new Thread(r, "easyframe-cache-warmup-" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Class<? extends BaseCache> cacheClass : cacheClasses) {
+            executor.execute(() -> {
+                try {
+                    load(executor, cacheClass, RETRY_DELAY, unloaded);
+                } finally {
+                    latch.countDown();
+                    if (remaining.decrementAndGet() == 0) {
+                        log.info(String.format("缓存预热完成，总耗时：%dms", System.currentTimeMillis() - startTime));
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 加载缓存，失败时按退避时间安排重试，直到成功
+     *
+     * @param retryDelay 本次失败后的重试间隔
+     * @param unloaded   尚未加载成功的缓存数
+     */
+    private static void load(ScheduledExecutorService executor, Class<? extends BaseCache> cacheClass, long retryDelay, AtomicInteger unloaded) {
+        if (load(cacheClass)) {
+            if (unloaded.decrementAndGet() == 0) {
+                executor.shutdown();
+            }
+            return;
+        }
+        log.info(String.format("缓存预热：%dms后重试, cacheId='%s'", retryDelay, cacheClass.getName()));
+        executor.schedule(() -> load(executor, cacheClass, Math.min(retryDelay * 2, MAX_RETRY_DELAY), unloaded),
+                retryDelay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 是否就绪：预热已完成并且所有缓存都加载成功（未调用start()时返回false）
+     * 有缓存加载失败时返回false，可通过{@link #getResults()}查看失败原因；失败的缓存重试成功后变为就绪
+     */
+    public static boolean isReady() {
+        return isFinished() && isAllSuccess();
+    }
+
+    /**
+     * 预热是否已结束（不论成功或失败，未调用start()时返回false）
+     */
+    public static boolean isFinished() {
+        return latch != null && latch.getCount() == 0;
+    }
+
+    /**
+     * 等待预热结束
+     *
+     * @param timeout 超时时间
+     * @param unit    时间单位
+     * @return 是否就绪（同{@link #isReady()}），超时、有缓存加载失败（重试中）或未调用start()时返回false
+     * @throws InterruptedException
+     */
+    public static boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        CountDownLatch current = latch;
+        return current != null && current.await(timeout, unit) && isAllSuccess();
+    }
+
+    private static boolean isAllSuccess() {
+        for (Result result : RESULTS.values()) {
+            if (!result.isSuccess()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获取各缓存的预热结果，key为缓存id
+     */
+    public static Map<String, Result> getResults() {
+        return Collections.unmodifiableMap(RESULTS);
+    }
+
+    /**
+     * 加载缓存并记录结果，已被其他请求加载出快照时直接视为成功
+     *
+     * @return 是否成功
+     */
+    private static boolean load(Class<? extends BaseCache> cacheClass) {
+        String cacheId = cacheClass.getName();
+        long startTime = System.currentTimeMillis();
+        CacheSnapshot<?> loaded = BaseCache.peekSnapshot(cacheClass);
+        if (loaded != null) {
+            RESULTS.put(cacheId, new Result(cacheId, loaded.size(), 0, null));
+            return true;
+        }
+        Session session = ServiceManager.getSession();
+        try {
+            session.startTransaction();
+            int rows = BaseCache.getSnapshot(cacheClass).size();
+            session.commitTransaction();
+            Result result = new Result(cacheId, rows, System.currentTimeMillis() - startTime, null);
+            RESULTS.put(cacheId, result);
+            log.info(String.format("缓存预热：cacheId='%s'，数据量：%d，耗时：%dms", cacheId, rows, result.getCostTime()));
+            return true;
+        } catch (Throwable e) {
+            try {
+                session.rollbackTransaction();
+            } catch (Exception ex) {
+                log.error(ex);
+            }
+            RESULTS.put(cacheId, new Result(cacheId, 0, System.currentTimeMillis() - startTime, e));
+            log.error("缓存预热失败, cacheId='" + cacheId + "'", e);
+            return false;
+        }
+    }
+
+    /**
+     * 单个缓存的预热结果
+     */
+    public static class Result {
+        private final String cacheId;
+        private final int rows;
+        private final long costTime;
+        private final Throwable error;
+
+        private Result(String cacheId, int rows, long costTime, Throwable error) {
+            this.cacheId = cacheId;
+            this.rows = rows;
+            this.costTime = costTime;
+            this.error = error;
+        }
+
+        public String getCacheId() {
+            return cacheId;
+        }
+
+        /**
+         * 数据量
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * 耗时（毫秒）
+         */
+        public long getCostTime() {
+            return costTime;
+        }
+
+        /**
+         * 加载失败的异常，成功时为null
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+}
@@ -0,0 +1,673 @@
+package com.robot.easyframe.core.cache;
+
+import com.ai.appframe2.bo.DataContainer;
+import com.ai.appframe2.common.DataType;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * 列式存储的缓存数据
+ * <p>
+ * 按列保存整表数据以减少内存占用：
+ * 1.整数列保存为long数组
+ * 2.时间列保存为毫秒数的long数组
+ * 3.重复值多的字符串列做字典编码，保存为int编码数组 + 字典
+ * 4.其他列保存为Object数组
+ * 查询时直接在列上过滤，只有返回的数据才会生成bean
+ *
+ * @author luozhan
+ * @date 2020-03
+ * @see com.robot.easyframe.annotation.ColumnarCache
+ */
+public class ColumnStore<T extends DataContainer> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 低于该比例（不同值数量/行数）的字符串列使用字典编码
+     */
+    private static final double DICT_RATIO = 0.5;
+
+    private final Class<T> boClass;
+    private final int size;
+    private final Map<String, Column> columns;
+
+    private ColumnStore(Class<T> boClass, int size, Map<String, Column> columns) {
+        this.boClass = boClass;
+        this.size = size;
+        this.columns = columns;
+    }
+
+    /**
+     * bean数组转列式存储
+     *
+     * @param data bean数组
+     * @return 列式存储对象
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends DataContainer> ColumnStore<T> of(T[] data) {
+        Set<String> names = new LinkedHashSet<>();
+        for (T bean : data) {
+            names.addAll(bean.getProperties().keySet());
+        }
+        Map<String, Column> columns = new LinkedHashMap<>(names.size() * 4 / 3 + 1);
+        Object[] values = new Object[data.length];
+        for (String name : names) {
+            for (int i = 0; i < data.length; i++) {
+                values[i] = data[i].get(name);
+            }
+            columns.put(name, Column.of(values));
+        }
+        return new ColumnStore<>((Class<T>) data.getClass().getComponentType(), data.length, columns);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Class<T> getBoClass() {
+        return boClass;
+    }
+
+    /**
+     * 获取指定行指定列的值
+     */
+    public Object get(int row, String name) {
+        Column column = columns.get(name);
+        return column == null ? null : column.get(row);
+    }
+
+    /**
+     * 获取整数列或时间列的long值，不做转换
+     *
+     * @param name 列名
+     * @param time true-时间列（毫秒数），false-整数列
+     * @return 列的long值，列不存在或类型不符时返回null
+     */
+    LongValues getLongValues(String name, boolean time) {
+        Column column = columns.get(name);
+        if (!time && column instanceof LongColumn) {
+            return new LongValues(((LongColumn) column).values, ((LongColumn) column).nulls);
+        }
+        if (time && column instanceof TimeColumn) {
+            return new LongValues(((TimeColumn) column).values, ((TimeColumn) column).nulls);
+        }
+        return null;
+    }
+
+    /**
+     * 生成指定行的bean
+     */
+    public T get(int row) {
+        T bean;
+        try {
+            bean = boClass.newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("列式缓存生成bean失败：" + boClass.getName(), e);
+        }
+        for (Map.Entry<String, Column> entry : columns.entrySet()) {
+            Object value = entry.getValue().get(row);
+            if (value != null) {
+                bean.initProperty(entry.getKey(), value);
+            }
+        }
+        return bean;
+    }
+
+    /**
+     * 生成全部数据的bean数组
+     */
+    @SuppressWarnings("unchecked")
+    public T[] toArray() {
+        T[] result = (T[]) Array.newInstance(boClass, size);
+        for (int i = 0; i < size; i++) {
+            result[i] = get(i);
+        }
+        return result;
+    }
+
+    /**
+     * 按主键应用增量，生成新的列式存储（本对象不变）
+     * 变更的数据原位替换，数据库中已不存在的数据移除，新增的数据追加到末尾；
+     * 只按行复制列数组，不生成bean，变更值的类型与列不一致时只重建该列
+     *
+     * @param keyName 主键列名
+     * @param keys    变更数据的主键
+     * @param changed 按主键重新加载的数据（主键 -> bean），keys中不在其中的视为已删除
+     * @return 新的列式存储
+     */
+    public ColumnStore<T> patch(String keyName, Set<String> keys, Map<String, ? extends DataContainer> changed) {
+        Column keyColumn = columns.get(keyName);
+        int[] matched = keyColumn == null ? new int[0] : keyColumn.rowsOf(keys);
+        Map<String, DataContainer> remaining = new LinkedHashMap<>(changed);
+        // 新存储每一行对应的原行号（-1表示新增），以及替换该行的bean
+        int[] sources = new int[size + remaining.size()];
+        DataContainer[] overrides = new DataContainer[sources.length];
+        int newSize = 0;
+        for (int row = 0, next = 0; row < size; row++) {
+            if (next < matched.length && matched[next] == row) {
+                next++;
+                DataContainer bean = remaining.remove(DataType.getAsString(keyColumn.get(row)));
+                if (bean == null) {
+                    // 已删除
+                    continue;
+                }
+                overrides[newSize] = bean;
+            }
+            sources[newSize++] = row;
+        }
+        for (DataContainer bean : remaining.values()) {
+            sources[newSize] = -1;
+            overrides[newSize++] = bean;
+        }
+
+        Set<String> names = new LinkedHashSet<>(columns.keySet());
+        for (DataContainer bean : changed.values()) {
+            names.addAll(bean.getProperties().keySet());
+        }
+        Map<String, Column> newColumns = new LinkedHashMap<>(names.size() * 4 / 3 + 1);
+        for (String name : names) {
+            Column column = columns.get(name);
+            Column patched = column == null ? null : column.patch(name, sources, overrides, newSize);
+            if (patched == null) {
+                // 新增的列或类型不一致，重建该列
+                Object[] values = new Object[newSize];
+                for (int i = 0; i < newSize; i++) {
+                    values[i] = overrides[i] != null ? overrides[i].get(name) : column == null ? null : column.get(sources[i]);
+                }
+                patched = Column.of(values);
+            }
+            newColumns.put(name, patched);
+        }
+        return new ColumnStore<>(boClass, newSize, newColumns);
+    }
+
+    /**
+     * 估算占用的内存（字节）
+     */
+    public long estimateSize() {
+        long result = 0;
+        for (Column column : columns.values()) {
+            result += column.estimateSize();
+        }
+        return result;
+    }
+
+    /**
+     * 估算单个属性值占用的内存（字节）
+     */
+    static long estimateValue(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        }
+        if (value instanceof BigDecimal) {
+            return 48;
+        }
+        if (value instanceof java.util.Date) {
+            return 32;
+        }
+        return 16;
+    }
+
+    /**
+     * 创建一个行视图，用于在不生成bean的情况下按行读取数据
+     * 行视图是可复用的，非线程安全，每个线程需单独创建
+     */
+    public RowView newView() {
+        return new RowView(this);
+    }
+
+    /**
+     * 行视图：以DataContainer的方式读取列式存储中某一行的数据
+     */
+    public static class RowView extends DataContainer {
+        private final transient ColumnStore<?> store;
+        private int row;
+
+        private RowView(ColumnStore<?> store) {
+            this.store = store;
+        }
+
+        public RowView at(int row) {
+            this.row = row;
+            return this;
+        }
+
+        @Override
+        public Object get(String name) {
+            return store.get(row, name);
+        }
+
+        @Override
+        public String getAsString(String name) {
+            return DataType.getAsString(get(name));
+        }
+
+        @Override
+        public long getAsLong(String name) {
+            return DataType.getAsLong(get(name));
+        }
+    }
+
+    /**
+     * 列
+     */
+    private abstract static class Column implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        abstract Object get(int row);
+
+        abstract long estimateSize();
+
+        /**
+         * 值（转成字符串后）在keys中的行号，升序
+         */
+        int[] rowsOf(Set<String> keys) {
+            int size = size();
+            int[] rows = new int[Math.min(size, keys.size())];
+            int count = 0;
+            for (int row = 0; row < size && count < rows.length; row++) {
+                if (keys.contains(DataType.getAsString(get(row)))) {
+                    rows[count++] = row;
+                }
+            }
+            return Arrays.copyOf(rows, count);
+        }
+
+        abstract int size();
+
+        /**
+         * 按行复制生成新列
+         *
+         * @param name      列名
+         * @param sources   新列每一行对应的原行号，-1表示新增
+         * @param overrides 新列每一行的替换值来源，为null时取原行的值
+         * @param size      新列的行数
+         * @return 新列，替换值的类型与本列不一致时返回null
+         */
+        abstract Column patch(String name, int[] sources, DataContainer[] overrides, int size);
+
+        static Column of(Object[] values) {
+            Class<?> type = null;
+            for (Object value : values) {
+                if (value == null) {
+                    continue;
+                }
+                if (type == null) {
+                    type = value.getClass();
+                } else if (type != value.getClass()) {
+                    // 类型不一致
+                    return new ObjectColumn(values);
+                }
+            }
+            if (type == Long.class || type == Integer.class || type == BigDecimal.class) {
+                Column column = LongColumn.of(values, type);
+                return column != null ? column : new ObjectColumn(values);
+            }
+            if (type == Timestamp.class || type == java.sql.Date.class || type == java.util.Date.class) {
+                Column column = TimeColumn.of(values, type);
+                return column != null ? column : new ObjectColumn(values);
+            }
+            if (type == String.class) {
+                Column column = DictColumn.of(values);
+                return column != null ? column : new ObjectColumn(values);
+            }
+            return new ObjectColumn(values);
+        }
+    }
+
+    private static class ObjectColumn extends Column {
+        private static final long serialVersionUID = 1L;
+        private final Object[] values;
+
+        private ObjectColumn(Object[] values) {
+            this.values = values.clone();
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        int size() {
+            return values.length;
+        }
+
+        @Override
+        Column patch(String name, int[] sources, DataContainer[] overrides, int size) {
+            Object[] newValues = new Object[size];
+            for (int i = 0; i < size; i++) {
+                newValues[i] = overrides[i] != null ? overrides[i].get(name) : values[sources[i]];
+            }
+            return new ObjectColumn(newValues);
+        }
+
+        @Override
+        long estimateSize() {
+            // 抽样估算
+            int step = Math.max(1, values.length / 100), count = 0;
+            long sampled = 0;
+            for (int i = 0; i < values.length; i += step, count++) {
+                sampled += estimateValue(values[i]);
+            }
+            return 16 + 4L * values.length + (count == 0 ? 0 : sampled * values.length / count);
+        }
+    }
+
+    /**
+     * 整数列（Long/Integer/无小数的BigDecimal）
+     */
+    private static class LongColumn extends Column {
+        private static final long serialVersionUID = 1L;
+        private final long[] values;
+        private final BitSet nulls;
+        private final Class<?> type;
+
+        private LongColumn(long[] values, BitSet nulls, Class<?> type) {
+            this.values = values;
+            this.nulls = nulls;
+            this.type = type;
+        }
+
+        static LongColumn of(Object[] values, Class<?> type) {
+            long[] longs = new long[values.length];
+            BitSet nulls = new BitSet(values.length);
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                if (value == null) {
+                    nulls.set(i);
+                } else if (value instanceof BigDecimal) {
+                    BigDecimal decimal = (BigDecimal) value;
+                    if (decimal.scale() != 0 || decimal.unscaledValue().bitLength() >= Long.SIZE) {
+                        // 有小数或超出long范围，不能无损转换
+                        return null;
+                    }
+                    longs[i] = decimal.longValue();
+                } else {
+                    longs[i] = ((Number) value).longValue();
+                }
+            }
+            return new LongColumn(longs, nulls, type);
+        }
+
+        @Override
+        Object get(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+            long value = values[row];
+            if (type == Integer.class) {
+                return (int) value;
+            }
+            return type == BigDecimal.class ? BigDecimal.valueOf(value) : value;
+        }
+
+        @Override
+        int size() {
+            return values.length;
+        }
+
+        @Override
+        int[] rowsOf(Set<String> keys) {
+            long[] sortedKeys = new long[keys.size()];
+            int count = 0;
+            for (String key : keys) {
+                try {
+                    long value = Long.parseLong(key);
+                    // 只接受与long值转成字符串后一致的主键，如"007"不会匹配7
+                    if (Long.toString(value).equals(key)) {
+                        sortedKeys[count++] = value;
+                    }
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            sortedKeys = Arrays.copyOf(sortedKeys, count);
+            Arrays.sort(sortedKeys);
+            int[] rows = new int[Math.min(values.length, keys.size())];
+            count = 0;
+            for (int row = 0; row < values.length && count < rows.length; row++) {
+                if (!nulls.get(row) && Arrays.binarySearch(sortedKeys, values[row]) >= 0) {
+                    rows[count++] = row;
+                }
+            }
+            return Arrays.copyOf(rows, count);
+        }
+
+        @Override
+        Column patch(String name, int[] sources, DataContainer[] overrides, int size) {
+            long[] newValues = new long[size];
+            BitSet newNulls = new BitSet(size);
+            for (int i = 0; i < size; i++) {
+                if (overrides[i] == null) {
+                    newValues[i] = values[sources[i]];
+                    if (nulls.get(sources[i])) {
+                        newNulls.set(i);
+                    }
+                    continue;
+                }
+                Object value = overrides[i].get(name);
+                if (value == null) {
+                    newNulls.set(i);
+                } else if (value.getClass() != type) {
+                    return null;
+                } else if (value instanceof BigDecimal) {
+                    BigDecimal decimal = (BigDecimal) value;
+                    if (decimal.scale() != 0 || decimal.unscaledValue().bitLength() >= Long.SIZE) {
+                        return null;
+                    }
+                    newValues[i] = decimal.longValue();
+                } else {
+                    newValues[i] = ((Number) value).longValue();
+                }
+            }
+            return new LongColumn(newValues, newNulls, type);
+        }
+
+        @Override
+        long estimateSize() {
+            return 32 + 8L * values.length + nulls.size() / 8;
+        }
+    }
+
+    /**
+     * 时间列（Timestamp/java.sql.Date/java.util.Date），保存毫秒数
+     */
+    private static class TimeColumn extends Column {
+        private static final long serialVersionUID = 1L;
+        private final long[] values;
+        private final BitSet nulls;
+        private final Class<?> type;
+
+        private TimeColumn(long[] values, BitSet nulls, Class<?> type) {
+            this.values = values;
+            this.nulls = nulls;
+            this.type = type;
+        }
+
+        static TimeColumn of(Object[] values, Class<?> type) {
+            long[] millis = new long[values.length];
+            BitSet nulls = new BitSet(values.length);
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                if (value == null) {
+                    nulls.set(i);
+                    continue;
+                }
+                if (value instanceof Timestamp && ((Timestamp) value).getNanos() % 1000000 != 0) {
+                    // 精度高于毫秒，不能无损转换
+                    return null;
+                }
+                millis[i] = ((java.util.Date) value).getTime();
+            }
+            return new TimeColumn(millis, nulls, type);
+        }
+
+        @Override
+        Object get(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+            long value = values[row];
+            if (type == Timestamp.class) {
+                return new Timestamp(value);
+            }
+            return type == java.sql.Date.class ? new java.sql.Date(value) : new java.util.Date(value);
+        }
+
+        @Override
+        int size() {
+            return values.length;
+        }
+
+        @Override
+        Column patch(String name, int[] sources, DataContainer[] overrides, int size) {
+            long[] newValues = new long[size];
+            BitSet newNulls = new BitSet(size);
+            for (int i = 0; i < size; i++) {
+                if (overrides[i] == null) {
+                    newValues[i] = values[sources[i]];
+                    if (nulls.get(sources[i])) {
+                        newNulls.set(i);
+                    }
+                    continue;
+                }
+                Object value = overrides[i].get(name);
+                if (value == null) {
+                    newNulls.set(i);
+                    continue;
+                }
+                if (value.getClass() != type || value instanceof Timestamp && ((Timestamp) value).getNanos() % 1000000 != 0) {
+                    return null;
+                }
+                newValues[i] = ((java.util.Date) value).getTime();
+            }
+            return new TimeColumn(newValues, newNulls, type);
+        }
+
+        @Override
+        long estimateSize() {
+            return 32 + 8L * values.length + nulls.size() / 8;
+        }
+    }
+
+    /**
+     * 字典编码的字符串列
+     */
+    private static class DictColumn extends Column {
+        private static final long serialVersionUID = 1L;
+        private final int[] codes;
+        private final String[] dict;
+
+        private DictColumn(int[] codes, String[] dict) {
+            this.codes = codes;
+            this.dict = dict;
+        }
+
+        static DictColumn of(Object[] values) {
+            Map<String, Integer> codeMap = new HashMap<>();
+            int[] codes = new int[values.length];
+            int maxDictSize = (int) (values.length * DICT_RATIO);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) {
+                    codes[i] = -1;
+                    continue;
+                }
+                Integer code = codeMap.get(values[i]);
+                if (code == null) {
+                    if (codeMap.size() >= maxDictSize) {
+                        // 重复值太少，字典编码没有意义
+                        return null;
+                    }
+                    code = codeMap.size();
+                    codeMap.put((String) values[i], code);
+                }
+                codes[i] = code;
+            }
+            String[] dict = new String[codeMap.size()];
+            codeMap.forEach((value, code) -> dict[code] = value);
+            return new DictColumn(codes, dict);
+        }
+
+        @Override
+        Object get(int row) {
+            int code = codes[row];
+            return code < 0 ? null : dict[code];
+        }
+
+        @Override
+        int size() {
+            return codes.length;
+        }
+
+        @Override
+        int[] rowsOf(Set<String> keys) {
+            BitSet keyCodes = new BitSet(dict.length);
+            for (int code = 0; code < dict.length; code++) {
+                if (keys.contains(dict[code])) {
+                    keyCodes.set(code);
+                }
+            }
+            int[] rows = new int[Math.min(codes.length, keys.size())];
+            int count = 0;
+            for (int row = 0; row < codes.length && count < rows.length; row++) {
+                if (codes[row] >= 0 && keyCodes.get(codes[row])) {
+                    rows[count++] = row;
+                }
+            }
+            return Arrays.copyOf(rows, count);
+        }
+
+        @Override
+        Column patch(String name, int[] sources, DataContainer[] overrides, int size) {
+            int[] newCodes = new int[size];
+            List<String> newDict = null;
+            Map<String, Integer> codeMap = null;
+            for (int i = 0; i < size; i++) {
+                if (overrides[i] == null) {
+                    newCodes[i] = codes[sources[i]];
+                    continue;
+                }
+                Object value = overrides[i].get(name);
+                if (value == null) {
+                    newCodes[i] = -1;
+                    continue;
+                }
+                if (!(value instanceof String)) {
+                    return null;
+                }
+                if (codeMap == null) {
+                    // 有变更值时才建立值到编码的映射，新值追加到字典末尾
+                    newDict = new ArrayList<>(Arrays.asList(dict));
+                    codeMap = new HashMap<>(dict.length * 4 / 3 + 1);
+                    for (int code = 0; code < dict.length; code++) {
+                        codeMap.put(dict[code], code);
+                    }
+                }
+                Integer code = codeMap.get(value);
+                if (code == null) {
+                    code = newDict.size();
+                    newDict.add((String) value);
+                    codeMap.put((String) value, code);
+                }
+                newCodes[i] = code;
+            }
+            return new DictColumn(newCodes, newDict == null ? dict : newDict.toArray(new String[0]));
+        }
+
+        @Override
+        long estimateSize() {
+            long result = 32 + 4L * codes.length + 4L * dict.length;
+            for (String value : dict) {
+                result += estimateValue(value);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.robot.easyframe.core.cache;
+
+import com.ai.appframe2.bo.DataContainer;
+import com.robot.easyframe.annotation.LocalSnapshot;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 缓存的本地快照文件读写
+ * <p>
+ * 文件格式：魔数(int) + 格式版本(int) + 生成时间(long) + 数据版本长度(int) + 数据版本(UTF-8) + 序列化的{@link ColumnStore}
+ * 文件目录通过系统属性easyframe.cache.snapshot.dir指定，默认为用户目录下的.easyframe/cache-snapshot
+ * <p>
+ * 安全：目录和文件只允许当前用户读写（支持POSIX权限的系统）；反序列化时只允许列式存储、JDK基本类型及缓存的bo类，
+ * 文件被篡改时读取失败，重新查询数据库
+ *
+ * @author luozhan
+ * @date 2020-03
+ * @see LocalSnapshot
+ */
+public class LocalSnapshotStore {
+    private static Log log = LogFactory.getLog(LocalSnapshotStore.class);
+
+    public static final String DIR_PROPERTY = "easyframe.cache.snapshot.dir";
+
+    private static final int MAGIC = 0x45464353;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Set<PosixFilePermission> DIR_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+
+    private static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+
+    /**
+     * 反序列化允许的JDK类（列的值类型及列式存储内部使用的类型）
+     */
+    private static final Set<String> ALLOWED_CLASSES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            Object.class.getName(), String.class.getName(), Number.class.getName(), Boolean.class.getName(),
+            Character.class.getName(), Byte.class.getName(), Short.class.getName(), Integer.class.getName(),
+            Long.class.getName(), Float.class.getName(), Double.class.getName(),
+            java.math.BigDecimal.class.getName(), java.math.BigInteger.class.getName(),
+            java.util.Date.class.getName(), java.sql.Date.class.getName(), java.sql.Time.class.getName(),
+            java.sql.Timestamp.class.getName(), java.util.BitSet.class.getName(),
+            java.util.HashMap.class.getName(), java.util.LinkedHashMap.class.getName())));
+
+    /**
+     * 读取快照文件，文件不存在、已过期或读取失败时返回null（读取失败的文件会被删除）
+     *
+     * @param cacheClass   缓存class
+     * @param boClass      缓存的bo类
+     * @param dataVersion  当前数据版本，与文件的数据版本不一致即过期
+     * @param maxAgeMillis 文件的最长有效时间，0表示不限制
+     * @return 快照数据
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends DataContainer> ColumnStore<T> read(Class<? extends BaseCache> cacheClass, Class<T> boClass,
+                                                         String dataVersion, long maxAgeMillis) {
+        Path path = getPath(cacheClass);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        long startTime = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("文件格式不正确");
+            }
+            long writeTime = in.readLong();
+            int versionLength = in.readInt();
+            if (versionLength < 0 || versionLength > 1024) {
+                throw new IOException("文件格式不正确");
+            }
+            byte[] versionBytes = new byte[versionLength];
+            in.readFully(versionBytes);
+            String fileVersion = new String(versionBytes, StandardCharsets.UTF_8);
+            boolean expired = !dataVersion.equals(fileVersion) ||
+                    maxAgeMillis > 0 && System.currentTimeMillis() - writeTime > maxAgeMillis;
+            if (expired) {
+                log.info(String.format("本地快照已过期, cacheId='%s', 文件版本：%s, 当前版本：%s", cacheClass.getName(), fileVersion, dataVersion));
+                return null;
+            }
+            try (ObjectInputStream objectIn = new SnapshotInputStream(in, boClass)) {
+                ColumnStore<T> store = (ColumnStore<T>) objectIn.readObject();
+                if (store.getBoClass() != boClass) {
+                    throw new InvalidClassException(store.getBoClass().getName(), "与缓存的bo类不一致");
+                }
+                log.info(String.format("从本地快照加载缓存, cacheId='%s', 数据量：%d，耗时：%dms", cacheClass.getName(), store.size(),
+                        System.currentTimeMillis() - startTime));
+                return store;
+            }
+        } catch (Exception e) {
+            log.warn("读取本地快照失败, cacheId='" + cacheClass.getName() + "'", e);
+            delete(cacheClass);
+            return null;
+        }
+    }
+
+    /**
+     * 写入快照文件（先写临时文件再替换，不会读到写了一半的文件），失败时只记录日志
+     *
+     * @param cacheClass  缓存class
+     * @param dataVersion 数据版本
+     * @param store       快照数据
+     */
+    static void write(Class<? extends BaseCache> cacheClass, String dataVersion, ColumnStore<?> store) {
+        Path path = getPath(cacheClass);
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            createDirectory(path.getParent());
+            Files.deleteIfExists(tempPath);
+            createFile(tempPath);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                byte[] versionBytes = dataVersion.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(versionBytes.length);
+                out.write(versionBytes);
+                ObjectOutputStream objectOut = new ObjectOutputStream(out);
+                objectOut.writeObject(store);
+                objectOut.flush();
+            }
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            log.warn("写入本地快照失败, cacheId='" + cacheClass.getName() + "'", e);
+            try {
+                Files.deleteIfExists(tempPath);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 删除快照文件
+     *
+     * @param cacheClass 缓存class
+     */
+    static void delete(Class<? extends BaseCache> cacheClass) {
+        try {
+            Files.deleteIfExists(getPath(cacheClass));
+        } catch (IOException e) {
+            log.warn("删除本地快照失败, cacheId='" + cacheClass.getName() + "'", e);
+        }
+    }
+
+    private static Path getPath(Class<? extends BaseCache> cacheClass) {
+        String dir = System.getProperty(DIR_PROPERTY,
+                System.getProperty("user.home") + File.separator + ".easyframe" + File.separator + "cache-snapshot");
+        return Paths.get(dir, cacheClass.getName() + ".snapshot");
+    }
+
+    private static boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    private static void createDirectory(Path dir) throws IOException {
+        if (Files.exists(dir)) {
+            return;
+        }
+        if (isPosix(dir)) {
+            Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(DIR_PERMISSIONS));
+        } else {
+            Files.createDirectories(dir);
+        }
+    }
+
+    private static void createFile(Path file) throws IOException {
+        if (isPosix(file)) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(FILE_PERMISSIONS));
+        } else {
+            Files.createFile(file);
+        }
+    }
+
+    /**
+     * 只允许反序列化列式存储、JDK基本类型及缓存的bo类，防止篡改的文件执行任意代码；
+     * 优先使用线程上下文类加载器加载bo类（应用服务器中bo类不一定能被默认类加载器找到）
+     */
+    private static class SnapshotInputStream extends ObjectInputStream {
+        private final Class<?> boClass;
+
+        private SnapshotInputStream(InputStream in, Class<?> boClass) throws IOException {
+            super(in);
+            this.boClass = boClass;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            // bo类及其父类（序列化bo类的Class对象时会带上父类的描述）
+            for (Class<?> clazz = boClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+                if (name.equals(clazz.getName())) {
+                    return clazz;
+                }
+            }
+            if (!isAllowed(name)) {
+                throw new InvalidClassException(name, "本地快照中不允许的类");
+            }
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            if (loader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, loader);
+                } catch (ClassNotFoundException ignored) {
+                }
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+            throw new InvalidClassException("本地快照中不允许代理类");
+        }
+
+        private static boolean isAllowed(String name) {
+            // 数组：基本类型数组或允许的类的数组
+            int dimension = 0;
+            while (dimension < name.length() && name.charAt(dimension) == '[') {
+                dimension++;
+            }
+            if (dimension > 0) {
+                if (name.length() == dimension + 1) {
+                    return "ZBCSIJFD".indexOf(name.charAt(dimension)) >= 0;
+                }
+                if (name.charAt(dimension) != 'L' || !name.endsWith(";")) {
+                    return false;
+                }
+                name = name.substring(dimension + 1, name.length() - 1);
+            }
+            return ALLOWED_CLASSES.contains(name)
+                    || name.equals(ColumnStore.class.getName())
+                    || name.startsWith(ColumnStore.class.getName() + "$");
+        }
+    }
+}
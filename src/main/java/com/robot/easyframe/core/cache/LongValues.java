@@ -0,0 +1,49 @@
+package com.robot.easyframe.core.cache;
+
+import java.io.Serializable;
+import java.util.BitSet;
+
+/**
+ * 转换成long的一列属性值（数字，或时间的毫秒数），按数据下标读取
+ * 范围条件直接比较基本类型，不需要每次读取属性值再转换
+ *
+ * @author luozhan
+ * @date 2020-03
+ * @see CacheSnapshot#getLongValues(String, boolean)
+ */
+public final class LongValues implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long[] values;
+    /**
+     * 属性值为null或无法转换的数据下标
+     */
+    private final BitSet nulls;
+
+    LongValues(long[] values, BitSet nulls) {
+        this.values = values;
+        this.nulls = nulls;
+    }
+
+    /**
+     * 是否为null（属性值为null或无法转换）
+     */
+    public boolean isNull(int position) {
+        return nulls.get(position);
+    }
+
+    /**
+     * 获取属性值，为null时返回0，需先调用{@link #isNull(int)}判断
+     */
+    public long get(int position) {
+        return values[position];
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    long estimateSize() {
+        return 32 + 8L * values.length + nulls.size() / 8;
+    }
+}
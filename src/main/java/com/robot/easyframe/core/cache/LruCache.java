@@ -0,0 +1,341 @@
+package com.robot.easyframe.core.cache;
+
+import com.ai.appframe2.bo.DataContainer;
+import com.robot.easyframe.annotation.PartialCache;
+import com.robot.easyframe.core.engine.DaoEngine;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 部分缓存的实现：按属性值缓存查询结果，超过上限时淘汰最近最少使用的数据
+ * <p>
+ * 1.缓存的key为"属性名=属性值"，value为该值对应的数据（没有数据时缓存空数组，避免重复查询数据库）
+ * 2.上限按数据条数计算（空数组算一条）
+ * 3.数据变更时：主键对应的缓存精确失效，其他属性的缓存无法判断是否受影响，全部失效；
+ * 在事务中变更时，当前线程在事务结束前不读写本缓存（避免缓存未提交的数据），提交后再失效
+ * 4.缓存中只保存属性值，每次命中都生成新的bean，调用方修改返回的bean不会影响缓存和其他调用方
+ *
+ * @author luozhan
+ * @date 2020-03
+ * @see PartialCache
+ */
+public class LruCache<T extends DataContainer> {
+    private static Log log = LogFactory.getLog(LruCache.class);
+
+    private static final String DELTA_PATH = "/AICACHE_DELTA/PARTIAL/%s";
+
+    private static final Map<Class, LruCache> INSTANCES = new ConcurrentHashMap<>();
+
+    /**
+     * 当前线程的事务中修改过数据的部分缓存，value为变更的主键（为null表示全部）
+     */
+    private static final ThreadLocal<Map<LruCache, Set<String>>> CHANGING = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * 需要检查其他节点失效通知的部分缓存
+     */
+    private static final Set<LruCache> DELTA_WATCHED = ConcurrentHashMap.newKeySet();
+
+    private final Class<T> boClass;
+    private final String keyName;
+    private final int maxSize;
+    private final long expireMillis;
+    /**
+     * 发布失效通知的zk节点，未开启{@link PartialCache#distributed()}时为null
+     */
+    private final String deltaPath;
+    private volatile long deltaVersion = -1;
+    /**
+     * 按访问顺序排列的缓存数据，最久未访问的在最前面
+     */
+    private final LinkedHashMap<String, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int weight = 0;
+    /**
+     * 失效次数，用于丢弃失效前开始、失效后才完成的数据库查询结果
+     */
+    private long generation = 0;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private LruCache(Class<T> boClass, PartialCache config) throws Exception {
+        this.boClass = boClass;
+        this.keyName = boClass.newInstance().getObjectType().getMainAttr();
+        this.maxSize = config.maxSize();
+        this.expireMillis = config.expireSeconds() * 1000L;
+        this.deltaPath = config.distributed() ? String.format(DELTA_PATH, boClass.getName()) : null;
+    }
+
+    /**
+     * 获取bo对应的部分缓存，bo未标记{@link PartialCache}时返回null
+     *
+     * @param boClass bo类
+     * @return 部分缓存
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends DataContainer> LruCache<T> of(Class<T> boClass) throws Exception {
+        PartialCache config = boClass.getAnnotation(PartialCache.class);
+        if (config == null) {
+            return null;
+        }
+        LruCache<T> cache = INSTANCES.get(boClass);
+        if (cache == null) {
+            cache = new LruCache<>(boClass, config);
+            LruCache<T> old = INSTANCES.putIfAbsent(boClass, cache);
+            if (old != null) {
+                cache = old;
+            } else if (cache.deltaPath != null) {
+                DELTA_WATCHED.add(cache);
+                BaseCache.startDeltaChecker();
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 按属性值获取数据，未缓存的值批量从数据库加载
+     *
+     * @param fieldName 属性名
+     * @param values    属性值
+     * @return 数据（按传入属性值的顺序）
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    public T[] get(String fieldName, String... values) throws Exception {
+        Set<String> valueSet = new LinkedHashSet<>(Arrays.asList(values));
+        if (CHANGING.get().containsKey(this)) {
+            // 当前事务修改过数据，直接查询数据库，不读写缓存
+            return toResult(valueSet, load(fieldName, new ArrayList<>(valueSet)));
+        }
+        Map<String, T[]> found = new HashMap<>(valueSet.size() * 4 / 3 + 1);
+        List<String> missing = new ArrayList<>();
+        long loadGeneration;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (String value : valueSet) {
+                String key = fieldName + "=" + value;
+                Entry<T> entry = entries.get(key);
+                if (entry != null && expireMillis > 0 && now - entry.loadTime > expireMillis) {
+                    remove(key);
+                    entry = null;
+                }
+                if (entry == null) {
+                    missing.add(value);
+                } else {
+                    found.put(value, entry.toBeans(boClass));
+                }
+            }
+            loadGeneration = generation;
+        }
+        hitCount.addAndGet(found.size());
+        missCount.addAndGet(missing.size());
+
+        if (!missing.isEmpty()) {
+            Map<String, T[]> loaded = load(fieldName, missing);
+            found.putAll(loaded);
+            synchronized (this) {
+                if (loadGeneration == generation) {
+                    long now = System.currentTimeMillis();
+                    loaded.forEach((value, beans) -> put(fieldName + "=" + value, new Entry<>(beans, now)));
+                }
+            }
+        }
+
+        return toResult(valueSet, found);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T[] toResult(Set<String> valueSet, Map<String, T[]> found) {
+        List<T> result = new ArrayList<>();
+        for (String value : valueSet) {
+            result.addAll(Arrays.asList(found.get(value)));
+        }
+        return result.toArray((T[]) Array.newInstance(boClass, result.size()));
+    }
+
+    /**
+     * 数据变更后调用
+     * 在事务中时，事务结束前当前线程不再读写本缓存，提交后失效并通知其他节点，回滚则不处理；不在事务中时立即失效
+     *
+     * @param keys 变更数据的主键，为null时清空全部缓存
+     */
+    public void changed(String[] keys) {
+        Map<LruCache, Set<String>> changing = CHANGING.get();
+        boolean registered = changing.containsKey(this);
+        Set<String> changedKeys = registered ? changing.get(this) : new HashSet<>();
+        if (keys == null) {
+            changedKeys = null;
+        } else if (changedKeys != null) {
+            changedKeys.addAll(Arrays.asList(keys));
+        }
+        changing.put(this, changedKeys);
+        if (!registered) {
+            CacheRefreshManager.runAfterTransaction(committed -> {
+                Set<String> result = CHANGING.get().remove(this);
+                if (committed) {
+                    String[] keyArray = result == null ? null : result.toArray(new String[0]);
+                    invalidate(keyArray);
+                    publish(keyArray);
+                }
+            });
+        }
+    }
+
+    /**
+     * 数据变更后使缓存失效
+     *
+     * @param keys 变更数据的主键，为null时清空全部缓存
+     */
+    public synchronized void invalidate(String[] keys) {
+        generation++;
+        if (keys == null) {
+            entries.clear();
+            weight = 0;
+            return;
+        }
+        String prefix = keyName + "=";
+        Set<String> keySet = new HashSet<>(Arrays.asList(keys));
+        Iterator<Map.Entry<String, Entry<T>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry<T>> entry = iterator.next();
+            String key = entry.getKey();
+            if (!key.startsWith(prefix) || keySet.contains(key.substring(prefix.length()))) {
+                weight -= entry.getValue().weight();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 通过zk通知其他节点失效，未开启{@link PartialCache#distributed()}时不处理
+     * 主键与之前发布的合并（保证漏检的节点也能失效），超过上限时改为通知全部失效
+     */
+    private void publish(String[] keys) {
+        if (deltaPath == null) {
+            return;
+        }
+        try {
+            if (keys == null || BaseCache.publishDelta(deltaPath, keys) == null) {
+                BaseCache.publishDelta(deltaPath, null);
+            }
+        } catch (Exception e) {
+            log.error("发布部分缓存失效通知失败, bo='" + boClass.getName() + "'", e);
+        }
+    }
+
+    /**
+     * 由后台线程定时检查其他节点发布的失效通知（见{@link BaseCache#startDeltaChecker()}）
+     * 通知中没有主键时失效全部缓存
+     */
+    static void checkDeltas() {
+        for (LruCache<?> cache : DELTA_WATCHED) {
+            try {
+                BaseCache.Delta delta = BaseCache.readDelta(cache.deltaPath, null);
+                if (delta == null || delta.version == cache.deltaVersion) {
+                    continue;
+                }
+                cache.deltaVersion = delta.version;
+                cache.invalidate(delta.keys.length == 0 ? null : delta.keys);
+            } catch (Throwable e) {
+                log.error("检查部分缓存失效通知失败, bo='" + cache.boClass.getName() + "'", e);
+            }
+        }
+    }
+
+    /**
+     * 命中率
+     */
+    public double getHitRate() {
+        long hit = hitCount.get(), total = hit + missCount.get();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    public synchronized int size() {
+        return weight;
+    }
+
+    public String getKeyName() {
+        return keyName;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, T[]> load(String fieldName, List<String> values) throws Exception {
+        Map<String, List<T>> grouped = new LinkedHashMap<>();
+        values.forEach(value -> grouped.put(value, new ArrayList<>()));
+        for (T bean : DaoEngine.getBeansIn(boClass, fieldName, values)) {
+            List<T> list = grouped.get(bean.getAsString(fieldName));
+            if (list != null) {
+                list.add(bean);
+            }
+        }
+        Map<String, T[]> result = new LinkedHashMap<>(grouped.size() * 4 / 3 + 1);
+        grouped.forEach((value, list) -> result.put(value, list.toArray((T[]) Array.newInstance(boClass, list.size()))));
+        return result;
+    }
+
+    private void put(String key, Entry<T> entry) {
+        remove(key);
+        entries.put(key, entry);
+        weight += entry.weight();
+        // 淘汰最久未访问的数据
+        Iterator<Entry<T>> iterator = entries.values().iterator();
+        while (weight > maxSize && iterator.hasNext()) {
+            weight -= iterator.next().weight();
+            iterator.remove();
+        }
+    }
+
+    private void remove(String key) {
+        Entry<T> old = entries.remove(key);
+        if (old != null) {
+            weight -= old.weight();
+        }
+    }
+
+    private static class Entry<T extends DataContainer> {
+        /**
+         * 每条数据的属性值，生成后不再修改
+         */
+        private final Map<String, Object>[] rows;
+        private final long loadTime;
+
+        @SuppressWarnings("unchecked")
+        private Entry(T[] beans, long loadTime) {
+            this.rows = new Map[beans.length];
+            for (int i = 0; i < beans.length; i++) {
+                // getProperties()返回的是副本
+                this.rows[i] = beans[i].getProperties();
+            }
+            this.loadTime = loadTime;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T[] toBeans(Class<T> boClass) {
+            T[] beans = (T[]) Array.newInstance(boClass, rows.length);
+            for (int i = 0; i < rows.length; i++) {
+                T bean;
+                try {
+                    bean = boClass.newInstance();
+                } catch (Exception e) {
+                    throw new RuntimeException("部分缓存生成bean失败：" + boClass.getName(), e);
+                }
+                for (Map.Entry<String, Object> property : rows[i].entrySet()) {
+                    if (property.getValue() != null) {
+                        bean.initProperty(property.getKey(), property.getValue());
+                    }
+                }
+                beans[i] = bean;
+            }
+            return beans;
+        }
+
+        private int weight() {
+            return Math.max(1, rows.length);
+        }
+    }
+}
@@ -237,6 +237,19 @@ public interface BaseDao<T extends DataContainer> {
      */
     <K extends DataContainer> int moveTo(BaseDao<K> destDao, List<T> beans) throws Exception;
 
+    /**
+     * 根据条件将数据移动到另一个表（在数据库内执行insert ... select + delete）
+     * 与moveTo()相比数据不经过应用，主键保持一致，适合归档、移历史表等大批量操作
+     *
+     * @param destDao       目标表的dao实例
+     * @param conditionBean 条件bean，不能为空
+     * @param columnMapping 字段映射关系（key:目标表字段，value:源表字段），传null时取两表同名字段
+     * @param <K>
+     * @return 操作数
+     * @throws Exception
+     */
+    <K extends DataContainer> int moveBy(BaseDao<K> destDao, DataContainerInterface conditionBean, Map<String, String> columnMapping) throws Exception;
+
     /**
      * 获取数量（主要用于获得分页查询业务的count总数）
      *
@@ -6,8 +6,12 @@ import com.ai.appframe2.common.SessionManager;
 import com.robot.easyframe.annotation.Cache;
 import com.robot.easyframe.core.Query;
 import com.robot.easyframe.core.cache.BaseCache;
+import com.robot.easyframe.core.cache.CacheSnapshot;
+import com.robot.easyframe.core.cache.CacheRefreshManager;
+import com.robot.easyframe.core.cache.LruCache;
 import com.robot.easyframe.core.engine.DaoEngine;
 import com.robot.easyframe.core.engine.DataEngine;
+import com.robot.easyframe.core.metrics.CacheMetrics;
 import com.robot.easyframe.def.Constants;
 import com.robot.easyframe.model.Pagination;
 import com.robot.easyframe.util.ResCommonUtil;
@@ -19,9 +23,8 @@ import java.lang.reflect.Array;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.text.MessageFormat;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.function.IntFunction;
 
 /**
  * BaseDaoImpl
@@ -37,6 +40,11 @@ public class BaseDaoImpl<T extends DataContainer> implements BaseDao<T> {
     private Class<T> boClass;
     private boolean isUseCache = false;
     private Class<? extends BaseCache<? extends BaseDao<T>>> cacheClass;
+    private String keyName;
+    /**
+     * 部分缓存，bo标记了@PartialCache时不为null
+     */
+    private LruCache<T> partialCache;
 
     @SuppressWarnings("unchecked")
     public BaseDaoImpl() {
@@ -52,6 +60,11 @@ public class BaseDaoImpl<T extends DataContainer> implements BaseDao<T> {
             Cache annotationConfig = boClass.getAnnotation(Cache.class);
             cacheClass = (Class<? extends BaseCache<? extends BaseDao<T>>>) annotationConfig.value();
         }
+        try {
+            partialCache = LruCache.of(boClass);
+        } catch (Exception e) {
+            log.error(String.format("%s初始化部分缓存失败，将直接查询数据库", boClass.getSimpleName()), e);
+        }
     }
 
     @Override
@@ -76,6 +89,10 @@ public class BaseDaoImpl<T extends DataContainer> implements BaseDao<T> {
 
     @Override
     public T getById(Long id) throws Exception {
+        if (partialCache != null && id != null) {
+            T[] result = partialCache.get(partialCache.getKeyName(), String.valueOf(id));
+            return result.length == 0 ? null : result[0];
+        }
         return DaoEngine.getBean(boClass, id);
     }
 
@@ -99,6 +116,7 @@ public class BaseDaoImpl<T extends DataContainer> implements BaseDao<T> {
     @Override
     public T[] getBy(DataContainerInterface bean, Pagination page) throws Exception {
         log.info(String.format("当前查询Bean：%s, 启用缓存查询：%s", this.boClass.getSimpleName(), String.valueOf(this.isUseCache)));
+        CacheMetrics.recordDaoRead(this.getClass(), isUseCache);
         return isUseCache ?
                 DataEngine.getBeans(cacheClass, bean, page) :
                 DaoEngine.getBeans(boClass, bean, page);
@@ -119,6 +137,9 @@ public class BaseDaoImpl<T extends DataContainer> implements BaseDao<T> {
         if (fieldValues.length == 1) {
             fieldValues = fieldValues[0].split(",");
         }
+        if (partialCache != null) {
+            return partialCache.get(fieldName, fieldValues);
+        }
         if (fieldValues.length > 10 && isContinuousArray(fieldValues)) {
             // 如果查询值是连续的，改用between语句，提高性能
             String start = fieldValues[0], end = fieldValues[fieldValues.length - 1];
@@ -128,11 +149,37 @@ public class BaseDaoImpl<T extends DataContainer> implements BaseDao<T> {
                 end = temp;
             }
             condition.set(fieldName, Query.between(start, end));
+            return getBy(condition);
+        }
+        return getIn(fieldName, fieldValues);
+    }
+
+    /**
+     * 按属性值查询（in条件），数据库查询时通过绑定参数传入，缓存查询时直接按值匹配，值中含逗号时也不会被拆分
+     */
+    @SuppressWarnings("unchecked")
+    private T[] getIn(String fieldName, String[] fieldValues) throws Exception {
+        CacheMetrics.recordDaoRead(this.getClass(), isUseCache);
+        if (!isUseCache) {
+            return DaoEngine.getBeansIn(boClass, fieldName, Arrays.asList(fieldValues));
+        }
+        CacheSnapshot<T> snapshot = BaseCache.getSnapshot(cacheClass);
+        Set<String> valueSet = new HashSet<>(Arrays.asList(fieldValues));
+        List<T> result = new ArrayList<>();
+        int[] positions = snapshot.lookup(fieldName, valueSet);
+        if (positions != null) {
+            for (int position : positions) {
+                result.add(snapshot.get(position));
+            }
         } else {
-            condition.set(fieldName, Query.in(StringUtils.join(fieldValues, ",")));
+            IntFunction<DataContainerInterface> reader = snapshot.newReader();
+            for (int i = 0; i < snapshot.size(); i++) {
+                if (valueSet.contains(reader.apply(i).getAsString(fieldName))) {
+                    result.add(snapshot.get(i));
+                }
+            }
         }
-        if(getBy(condition)!=null){return null;}
-        return getBy(condition);
+        return result.toArray((T[]) Array.newInstance(boClass, result.size()));
     }
 
     @Override
@@ -172,9 +219,7 @@ public class BaseDaoImpl<T extends DataContainer> implements BaseDao<T> {
             }
         }
         int result = (beans.length == 1) ? DaoEngine.save(beans[0]) : DaoEngine.save(beans);
-        if (this.cacheClass != null) {
-            BaseCache.refresh(cacheClass);
-        }
+        refreshCache(getCacheKeys(beans));
         return result;
     }
 
@@ -191,9 +236,7 @@ public class BaseDaoImpl<T extends DataContainer> implements BaseDao<T> {
         }
         handleNewBeans(beans);
         int result = (beans.length == 1) ? DaoEngine.save(beans[0]) : DaoEngine.save(beans);
-        if (this.cacheClass != null) {
-            BaseCache.refresh(cacheClass);
-        }
+        refreshCache(getCacheKeys(beans));
         return result;
     }
 
@@ -208,13 +251,13 @@ public class BaseDaoImpl<T extends DataContainer> implements BaseDao<T> {
         if (beans.length == 0) {
             return 0;
         }
+        // 删除后bean的状态会被重置，提前取出主键
+        String[] keys = getCacheKeys(beans);
         for (DataContainerInterface bean : beans) {
             bean.delete();
         }
         int result = (beans.length == 1) ? DaoEngine.save(beans[0]) : DaoEngine.save(beans);
-        if (this.cacheClass != null) {
-            BaseCache.refresh(cacheClass);
-        }
+        refreshCache(keys);
         return result;
     }
 
@@ -237,6 +280,19 @@ public class BaseDaoImpl<T extends DataContainer> implements BaseDao<T> {
         return moveTo(destDao, beans.toArray((T[]) Array.newInstance(boClass, 0)));
     }
 
+    @Override
+    public <K extends DataContainer> int moveBy(BaseDao<K> destDao, DataContainerInterface conditionBean, Map<String, String> columnMapping) throws Exception {
+        int result = DaoEngine.moveBy(boClass, destDao.getBoClass(), conditionBean, columnMapping);
+        // 不知道移动了哪些数据，两边的缓存都全量刷新
+        refreshCache(null);
+        Cache destCacheConfig = destDao.getBoClass().getAnnotation(Cache.class);
+        if (destCacheConfig != null) {
+            CacheRefreshManager.register(destCacheConfig.value());
+        }
+        invalidatePartialCache(LruCache.of(destDao.getBoClass()), null);
+        return result;
+    }
+
     @Override
     public int count(DataContainerInterface bean) throws Exception {
         return isUseCache ?
@@ -325,12 +381,52 @@ public class BaseDaoImpl<T extends DataContainer> implements BaseDao<T> {
     }
 
 
+    /**
+     * 获取主键名，如果有多个只会取其中一个
+     */
+    private String getKeyName() throws Exception {
+        if (keyName == null) {
+            keyName = boClass.newInstance().getObjectType().getMainAttr();
+        }
+        return keyName;
+    }
+
+    /**
+     * 获取需要增量刷新缓存的主键，未配置缓存时返回null
+     */
+    private String[] getCacheKeys(DataContainerInterface[] beans) throws Exception {
+        return this.cacheClass == null && this.partialCache == null ? null : ResCommonUtil.getFieldValues(beans, getKeyName());
+    }
+
+    /**
+     * 增删改后按主键增量刷新关联的缓存（在事务中时，等事务提交后合并执行）
+     *
+     * @param keys 变更数据的主键，为null时全量刷新
+     */
+    private void refreshCache(String[] keys) throws Exception {
+        if (this.cacheClass != null) {
+            CacheRefreshManager.register(cacheClass, keys);
+        }
+        invalidatePartialCache(this.partialCache, keys);
+    }
+
+    /**
+     * 部分缓存失效（在事务中时，等事务提交后失效，见{@link LruCache#changed(String[])}）
+     *
+     * @param cache 部分缓存，为null时不处理
+     * @param keys  变更数据的主键，为null时清空全部
+     */
+    private static void invalidatePartialCache(LruCache<?> cache, String[] keys) {
+        if (cache != null) {
+            cache.changed(keys);
+        }
+    }
+
     /**
      * 处理新增beans数据，设置新增状态&添加主键
      */
     private void handleNewBeans(DataContainerInterface... beans) throws Exception {
-        // 获取主键，如果有多个只会取其中一个
-        String keyName = boClass.newInstance().getObjectType().getMainAttr();
+        String keyName = getKeyName();
 
         String[] sequence = null;
         for (int i = 0; i < beans.length; i++) {
@@ -26,6 +26,7 @@ import java.sql.ResultSetMetaData;
 import java.text.MessageFormat;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -47,6 +48,16 @@ public class DaoEngine {
 
     private static final Pattern PATTERN_ORDER = Pattern.compile(":orderBy(Asc|Desc)-(\\d*)");
 
+    /**
+     * 批量保存时默认的分块大小
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 5000;
+
+    /**
+     * in条件每次查询的最大值个数（oracle的in最多1000个）
+     */
+    private static final int MAX_IN_SIZE = 1000;
+
     /**
      * 获取bo的ObjectType
      */
@@ -114,6 +125,33 @@ public class DaoEngine {
         return getBeans(clazz, null, conditionSql, parameter, null);
     }
 
+    /**
+     * 根据属性值查询（in条件）
+     * 属性值通过绑定参数传入，值中含逗号等字符时也不会被拆分；值的个数超过1000时分批查询
+     *
+     * @param clazz     查询bo的类型
+     * @param fieldName 属性名
+     * @param values    属性值
+     * @return 符合条件的bo数组，查询不到返回空数组
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends DataContainerInterface> T[] getBeansIn(Class<T> clazz, String fieldName, Collection<String> values) throws Exception {
+        List<String> valueList = new ArrayList<>(new LinkedHashSet<>(values));
+        List<T> result = new ArrayList<>();
+        for (int i = 0; i < valueList.size(); i += MAX_IN_SIZE) {
+            StringBuilder conditionSql = new StringBuilder(fieldName).append(" in (");
+            Map<String, String> parameter = new HashMap<>(MAX_IN_SIZE * 4 / 3 + 1);
+            for (String value : valueList.subList(i, Math.min(i + MAX_IN_SIZE, valueList.size()))) {
+                String paramName = "V_" + parameter.size();
+                conditionSql.append(parameter.isEmpty() ? ":" : ",:").append(paramName);
+                parameter.put(paramName, value);
+            }
+            conditionSql.append(")");
+            result.addAll(Arrays.asList(getBeans(clazz, conditionSql.toString(), parameter)));
+        }
+        return result.toArray((T[]) Array.newInstance(clazz, result.size()));
+    }
+
     /**
      * 根据condition-sql查询（分页&可选查询的列）
      * root
@@ -142,7 +180,7 @@ public class DaoEngine {
     /**
      * 连表查询（不建议使用）
      * 会扫描主表bo文件中的外键配置属性，合并主表的属性一起查询出来
-     * 已过期，建议直接使用连表查询sql或者先单表查询后再使用字典翻译功能实现
+     * 已过期，建议直接使用连表查询sql或者先单表查询后再使用字典翻译功能实现，两张表都已缓存时可使用{@link DataEngine#join}
      *
      * @param clazz 主表BO类
      * @param cond  条件bean
@@ -254,15 +292,59 @@ public class DaoEngine {
 
     /**
      * 批量保存（包含新增、更新、删除，通过bean.isNew()/isDeleted()/isModified()依次判断）
+     * 数量超过{@link #DEFAULT_CHUNK_SIZE}时自动分块执行（不提交事务），避免一次构造过大的batch
      *
      * @param beans 对象数组
      */
     public static int save(DataContainerInterface[] beans) throws Exception {
+        if (beans.length > DEFAULT_CHUNK_SIZE) {
+            return save(beans, DEFAULT_CHUNK_SIZE, 0, null);
+        }
         try (Connection conn = ServiceManager.getSession().getConnection()) {
             return ServiceManager.getDataStore().saveBatch2(conn, beans);
         }
     }
 
+    /**
+     * 分块批量保存，适用于几十万条数据的大批量增删改
+     * <p>
+     * 注：commitInterval大于0时会在执行过程中提交当前事务并开启新事务，
+     * 已提交的数据在后续出错时不会回滚，请确保业务可以重入
+     *
+     * @param beans          对象数组
+     * @param chunkSize      每块的数量
+     * @param commitInterval 每处理多少条数据提交一次事务，0表示不做中间提交
+     * @param progress       进度回调，入参为（已处理数量，总数量），不需要时传null
+     * @return 操作数
+     */
+    public static int save(DataContainerInterface[] beans, int chunkSize, int commitInterval,
+                           BiConsumer<Integer, Integer> progress) throws Exception {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize必须大于0：" + chunkSize);
+        }
+        Session session = ServiceManager.getSession();
+        int total = beans.length, result = 0, uncommitted = 0;
+        for (int start = 0; start < total; start += chunkSize) {
+            int size = Math.min(chunkSize, total - start);
+            DataContainerInterface[] chunk = new DataContainerInterface[size];
+            System.arraycopy(beans, start, chunk, 0, size);
+            try (Connection conn = session.getConnection()) {
+                result += ServiceManager.getDataStore().saveBatch2(conn, chunk);
+            }
+            uncommitted += size;
+            if (commitInterval > 0 && uncommitted >= commitInterval && start + size < total && session.isStartTransaction()) {
+                session.commitTransaction();
+                session.startTransaction();
+                uncommitted = 0;
+                log.debug("分块保存中间提交，已提交数量：" + (start + size));
+            }
+            if (progress != null) {
+                progress.accept(start + size, total);
+            }
+        }
+        return result;
+    }
+
     /**
      * 异步执行入库代码
      *
@@ -325,6 +407,59 @@ public class DaoEngine {
         }
     }
 
+    /**
+     * 在数据库内部将符合条件的数据从源表移动到目标表（insert ... select + delete）
+     * 数据不经过应用，也不会重新生成主键，两条语句在当前事务中执行
+     *
+     * @param srcClass      源表BO类
+     * @param destClass     目标表BO类
+     * @param cond          条件bean（不能为空，排序条件将被忽略）
+     * @param columnMapping 字段映射关系，key为目标表字段，value为源表字段或表达式；
+     *                      为空时取两表同名的字段
+     * @return 操作数
+     * @throws Exception
+     */
+    public static int moveBy(Class<? extends DataContainerInterface> srcClass, Class<? extends DataContainerInterface> destClass,
+                             DataContainerInterface cond, Map<String, String> columnMapping) throws Exception {
+        Map<String, Object> map = bean2sql(cond, true);
+        String conditionSql = (String) map.get("sql");
+        Map paramMap = (Map) map.get("paramMap");
+        int orderIndex = conditionSql.lastIndexOf(" order by ");
+        if (orderIndex >= 0) {
+            conditionSql = conditionSql.substring(0, orderIndex);
+        }
+        if (StringUtils.isBlank(conditionSql)) {
+            throw new RuntimeException("moveBy()必须指定条件，不允许整表移动，源表：" + srcClass.getSimpleName());
+        }
+        ObjectType srcType = getBoType(srcClass);
+        ObjectType destType = getBoType(destClass);
+        if (columnMapping == null || columnMapping.isEmpty()) {
+            // 未指定映射关系时，取两表同名的字段
+            columnMapping = new LinkedHashMap<>();
+            for (String col : destType.getPropertyNames()) {
+                if (srcType.hasProperty(col)) {
+                    columnMapping.put(col, col);
+                }
+            }
+        }
+        String destCols = StringUtils.join(columnMapping.keySet(), ",");
+        String srcCols = StringUtils.join(columnMapping.values(), ",");
+        String srcTable = srcType.getMapingEnty();
+        String insertSql = MessageFormat.format("INSERT INTO {0} ( {1} ) SELECT {2} FROM {3} WHERE {4}",
+                destType.getMapingEnty(), destCols, srcCols, srcTable, conditionSql);
+        String deleteSql = MessageFormat.format("DELETE FROM {0} WHERE {1}", srcTable, conditionSql);
+        log.debug(insertSql);
+        log.debug(deleteSql);
+
+        long insertCount = execSQL(insertSql, paramMap);
+        long deleteCount = execSQL(deleteSql, paramMap);
+        if (insertCount != deleteCount) {
+            // 两条语句之间数据被并发修改，抛出异常让事务回滚
+            throw new RuntimeException(String.format("moveBy()新增数量(%d)与删除数量(%d)不一致，源表：%s", insertCount, deleteCount, srcTable));
+        }
+        return (int) insertCount;
+    }
+
     /**
      * 根据完整sql查询，根据结果生成传入class的数组
      *
@@ -5,9 +5,13 @@ import com.ai.appframe2.common.DataContainerInterface;
 import com.ai.appframe2.complex.cache.CacheFactory;
 import com.ai.appframe2.complex.cache.ICache;
 
+import com.robot.easyframe.core.Aggregate;
 import com.robot.easyframe.core.Query;
 import com.robot.easyframe.core.cache.BaseCache;
+import com.robot.easyframe.core.cache.CacheSnapshot;
+import com.robot.easyframe.core.cache.LongValues;
 import com.robot.easyframe.core.dao.BaseDao;
+import com.robot.easyframe.core.metrics.CacheMetrics;
 import com.robot.easyframe.model.Pagination;
 import com.robot.easyframe.util.Convert;
 import org.apache.commons.lang.StringUtils;
@@ -15,13 +19,30 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.lang.reflect.Array;
-import java.sql.Timestamp;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
 import java.util.function.Predicate;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -31,6 +52,59 @@ import java.util.stream.Stream;
 public class DataEngine {
     private static Log log = LogFactory.getLog(DataEngine.class);
 
+    /**
+     * 编译好的过滤条件缓存，key为属性名+条件语句
+     */
+    private static final Map<String, CompiledPredicate> PREDICATE_CACHE = new ConcurrentHashMap<>();
+
+    private static final int MAX_PREDICATE_CACHE_SIZE = 2048;
+
+    /**
+     * 排序条件，同DaoEngine
+     */
+    private static final Pattern PATTERN_ORDER = Pattern.compile(":orderBy(Asc|Desc)-(\\d*)");
+
+    /**
+     * 并行过滤的默认阈值（数据量 × 条件执行代价之和）
+     */
+    public static final long DEFAULT_PARALLEL_THRESHOLD = 500000;
+
+    /**
+     * 并行过滤时每块的最小数据量
+     */
+    private static final int MIN_CHUNK_SIZE = 10000;
+
+    private static volatile long parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * 并行过滤专用线程池，避免占用公共ForkJoinPool
+     */
+    private static volatile ForkJoinPool scanPool;
+
+    /**
+     * 查询结果缓存的默认条数
+     */
+    public static final int DEFAULT_MEMO_SIZE = 1024;
+
+    /**
+     * 超过该条数的查询结果不缓存
+     */
+    private static final int MAX_MEMO_ROWS = 10000;
+
+    private static volatile int memoSize = DEFAULT_MEMO_SIZE;
+
+    /**
+     * 查询结果缓存，key为 缓存类名 + 快照版本 + 规范化的查询条件 + 分页，value为符合条件的数据下标
+     * 读取不加锁；超过上限时由一个线程按最近访问时间淘汰最久未访问的1/4（近似LRU）
+     * 缓存刷新后快照版本变化，旧结果不会再命中，随淘汰移除
+     */
+    private static final Map<String, Memo> MEMO = new ConcurrentHashMap<>();
+
+    /**
+     * 是否有线程正在淘汰查询结果缓存
+     */
+    private static final AtomicBoolean MEMO_EVICTING = new AtomicBoolean();
+
     /**
      * 缓存中获取符合条件的数据
      *
@@ -43,8 +117,26 @@ public class DataEngine {
      */
     @SuppressWarnings("unchecked")
     public static <T extends DataContainer> T[] getBeans(Class<? extends BaseCache<? extends BaseDao<T>>> cacheClass, DataContainerInterface cond, Pagination page) throws Exception {
-        T[] data = (T[]) CacheFactory.get(cacheClass, cacheClass);
-        return getBeans(data, cond, page);
+        CacheSnapshot<T> snapshot = BaseCache.getSnapshot(cacheClass);
+        List<CompiledPredicate> condList = compileConditions(cond);
+        RowOrder order = RowOrder.parse(cond);
+        if (condList.size() == 0 && page == null && order == null) {
+            // 无查询条件，无分页条件，无排序条件
+            CacheMetrics.recordQuery(cacheClass, 0, snapshot.size(), 0);
+            return snapshot.getData();
+        }
+        String memoKey = getMemoKey(cacheClass, snapshot, cond, page);
+        int[] positions = getMemo(cacheClass, memoKey);
+        if (positions == null) {
+            positions = scan(cacheClass, snapshot, cond, condList, order, page);
+            putMemo(memoKey, positions);
+        }
+        // 只为返回的数据生成bean（列式存储）
+        T[] result = (T[]) Array.newInstance(snapshot.getBoClass(), positions.length);
+        for (int i = 0; i < positions.length; i++) {
+            result[i] = snapshot.get(positions[i]);
+        }
+        return result;
     }
 
     /**
@@ -60,10 +152,23 @@ public class DataEngine {
     @SuppressWarnings("unchecked")
     public static <T extends DataContainer> T[] getBeans(T[] data, DataContainerInterface cond, Pagination page) {
         List<Predicate<T>> condList = bean2List(cond);
-        if (condList.size() == 0 && page == null) {
-            // 1.无查询条件，无分页条件
+        RowOrder order = RowOrder.parse(cond);
+        if (condList.size() == 0 && page == null && order == null) {
+            // 1.无查询条件，无分页条件，无排序条件
             return data;
         }
+        if (order != null) {
+            // 有排序条件时先过滤出所有符合条件的下标，排序后再分页
+            Predicate<T> predicate = condList.stream().reduce(Predicate::and).orElse(bo -> true);
+            int[] positions = IntStream.range(0, data.length).filter(i -> predicate.test(data[i])).toArray();
+            positions = order.sort(i -> data[i], positions, page == null ? 0 : page.getStart() - 1,
+                    page == null ? Integer.MAX_VALUE : page.getPageSize());
+            T[] result = (T[]) Array.newInstance(data.getClass().getComponentType(), positions.length);
+            for (int i = 0; i < positions.length; i++) {
+                result[i] = data[positions[i]];
+            }
+            return result;
+        }
         Stream<T> result = Arrays.stream(data);
         if (condList.size() != 0) {
             // 2.条件过滤
@@ -100,20 +205,609 @@ public class DataEngine {
      */
     @SuppressWarnings("unchecked")
     public static <T extends DataContainerInterface> int count(Class<? extends ICache> cacheClass, DataContainerInterface cond) throws Exception {
+        if (BaseCache.class.isAssignableFrom(cacheClass)) {
+            CacheSnapshot<?> snapshot = BaseCache.getSnapshot((Class<? extends BaseCache>) cacheClass);
+            List<CompiledPredicate> condList = compileConditions(cond);
+            if (condList.size() == 0) {
+                return snapshot.size();
+            }
+            String memoKey = getMemoKey(cacheClass, snapshot, cond, null);
+            if (memoKey != null) {
+                // count与getBeans的结果互不通用，key中的分页部分用"count"区分
+                memoKey += "count";
+            }
+            int[] count = getMemo(cacheClass, memoKey);
+            if (count == null) {
+                count = new int[]{scan(cacheClass, snapshot, cond, condList, null, null).length};
+                putMemo(memoKey, count);
+            }
+            return count[0];
+        }
         T[] data = (T[]) CacheFactory.get(cacheClass, cacheClass);
         List<Predicate<T>> condList = bean2List(cond);
         if (condList.size() == 0) {
             // 1.无查询条件
             return data.length;
         }
-        Stream<T> result = Arrays.stream(data);
         // 2.条件过滤
         Predicate<T> predicate = condList.stream().reduce(Predicate::and).get();
         return (int) Arrays.stream(data).filter(predicate).count();
     }
 
+    /**
+     * 对缓存中符合条件的数据分组聚合，一次遍历完成，数据量大、条件复杂时分块并行处理后合并
+     * 如：统计每种状态的SIM卡数量 aggregate(SimCardCache.class, cond, new String[]{"RES_STATE"}, Aggregate.count())
+     *
+     * @param cacheClass    缓存class
+     * @param cond          查询条件（其中的排序条件无效）
+     * @param groupByFields 分组属性，按属性值的字符串形式分组；为null或空数组时所有数据聚合成一行
+     * @param aggregates    聚合函数
+     * @return 每组一行，包含分组属性（取组内第一条数据的值）和各聚合值，按分组在缓存中首次出现的顺序排列
+     * @throws Exception
+     */
+    public static DataContainer[] aggregate(Class<? extends BaseCache> cacheClass, DataContainerInterface cond,
+                                            String[] groupByFields, Aggregate... aggregates) throws Exception {
+        long startTime = System.nanoTime();
+        CacheSnapshot<?> snapshot = BaseCache.getSnapshot(cacheClass);
+        String[] groupBy = groupByFields == null ? new String[0] : groupByFields;
+        List<CompiledPredicate> condList = compileConditions(cond);
+        for (CompiledPredicate compiled : condList) {
+            compiled.prepare(snapshot);
+        }
+        int[] candidates = lookupIndex(snapshot, cond);
+        int total = candidates == null ? snapshot.size() : candidates.length;
+
+        Map<Object, Group> groups;
+        int weight = (cond == null ? 0 : getWeight(cond)) + aggregates.length;
+        if (total >= MIN_CHUNK_SIZE * 2 && (long) total * weight >= parallelThreshold) {
+            // 分块并行聚合，按块的顺序合并
+            ForkJoinPool pool = getScanPool();
+            int chunkSize = Math.max(MIN_CHUNK_SIZE, total / (pool.getParallelism() * 4));
+            List<ForkJoinTask<Map<Object, Group>>> tasks = new ArrayList<>();
+            for (int from = 0; from < total; from += chunkSize) {
+                int start = from, end = Math.min(from + chunkSize, total);
+                tasks.add(pool.submit(() -> aggregateChunk(snapshot, candidates, start, end, condList, groupBy, aggregates)));
+            }
+            groups = tasks.get(0).join();
+            for (int i = 1; i < tasks.size(); i++) {
+                for (Map.Entry<Object, Group> entry : tasks.get(i).join().entrySet()) {
+                    Group group = groups.get(entry.getKey());
+                    if (group == null) {
+                        groups.put(entry.getKey(), entry.getValue());
+                    } else {
+                        group.merge(entry.getValue(), aggregates);
+                    }
+                }
+            }
+        } else {
+            groups = aggregateChunk(snapshot, candidates, 0, total, condList, groupBy, aggregates);
+        }
+        if (groupBy.length == 0 && groups.isEmpty()) {
+            // 同sql，不分组时没有数据也返回一行
+            groups.put("", new Group(new Object[0], aggregates));
+        }
+
+        DataContainer[] result = new DataContainer[groups.size()];
+        int i = 0;
+        for (Group group : groups.values()) {
+            result[i++] = group.toDc(groupBy, aggregates);
+        }
+        CacheMetrics.recordQuery(cacheClass, total, result.length, System.nanoTime() - startTime);
+        return result;
+    }
+
+    private static Map<Object, Group> aggregateChunk(CacheSnapshot<?> snapshot, int[] candidates, int from, int to,
+                                                     List<CompiledPredicate> condList, String[] groupBy, Aggregate[] aggregates) {
+        IntPredicate predicate = condList.size() == 0 ? null : bind(condList, snapshot);
+        IntFunction<DataContainerInterface> reader = snapshot.newReader();
+        Map<Object, Group> groups = new LinkedHashMap<>();
+        for (int i = from; i < to; i++) {
+            int position = candidates == null ? i : candidates[i];
+            if (predicate != null && !predicate.test(position)) {
+                continue;
+            }
+            DataContainerInterface bo = reader.apply(position);
+            Object key;
+            if (groupBy.length == 0) {
+                key = "";
+            } else if (groupBy.length == 1) {
+                key = bo.getAsString(groupBy[0]);
+            } else {
+                String[] values = new String[groupBy.length];
+                for (int j = 0; j < groupBy.length; j++) {
+                    values[j] = bo.getAsString(groupBy[j]);
+                }
+                key = Arrays.asList(values);
+            }
+            Group group = groups.get(key);
+            if (group == null) {
+                Object[] keys = new Object[groupBy.length];
+                for (int j = 0; j < groupBy.length; j++) {
+                    keys[j] = bo.get(groupBy[j]);
+                }
+                group = new Group(keys, aggregates);
+                groups.put(key, group);
+            }
+            group.add(bo, aggregates);
+        }
+        return groups;
+    }
+
+    /**
+     * 两个缓存的内连接（哈希连接），查询条件只作用于左表
+     *
+     * @see #join(Class, Class, String, String, DataContainerInterface, DataContainerInterface, Pagination)
+     */
+    public static DataContainer[] join(Class<? extends BaseCache> leftCache, Class<? extends BaseCache> rightCache,
+                                       String leftKey, String rightKey, DataContainerInterface cond, Pagination page) throws Exception {
+        return join(leftCache, rightCache, leftKey, rightKey, cond, null, page);
+    }
+
+    /**
+     * 两个缓存的内连接（哈希连接），如资源表关联资源类型表：
+     * join(SimCardCache.class, ResTypeCache.class, "RES_TYPE_ID", "RES_TYPE_ID", cond, null, page)
+     * <p>
+     * 两边分别按条件过滤后，在数据较少的一边按连接属性建立哈希表，用另一边逐条探测；
+     * 连接属性按字符串形式比较，为null的数据不参与连接（同sql）
+     *
+     * @param leftCache  左表缓存class
+     * @param rightCache 右表缓存class
+     * @param leftKey    左表连接属性
+     * @param rightKey   右表连接属性
+     * @param leftCond   左表查询条件，可包含排序条件
+     * @param rightCond  右表查询条件，可包含排序条件
+     * @param page       分页对象
+     * @return 合并后的数据（左表属性 + 右表中与左表不重名的属性），按左表顺序排列，左表同一条数据连接的多条右表数据按右表顺序排列
+     * @throws Exception
+     */
+    public static DataContainer[] join(Class<? extends BaseCache> leftCache, Class<? extends BaseCache> rightCache, String leftKey, String rightKey,
+                                       DataContainerInterface leftCond, DataContainerInterface rightCond, Pagination page) throws Exception {
+        CacheSnapshot<?> left = BaseCache.getSnapshot(leftCache);
+        CacheSnapshot<?> right = BaseCache.getSnapshot(rightCache);
+        int[] leftPositions = scan(leftCache, left, leftCond, compileConditions(leftCond), RowOrder.parse(leftCond), null);
+        int[] rightPositions = scan(rightCache, right, rightCond, compileConditions(rightCond), RowOrder.parse(rightCond), null);
+
+        // 连接结果，每个元素为 左表序号 << 32 | 右表序号（序号为在过滤结果中的下标），按左表、右表顺序排列
+        long[] pairs = new long[Math.min(leftPositions.length, rightPositions.length)];
+        int size = 0;
+        if (rightPositions.length <= leftPositions.length) {
+            // 右表建哈希表，按左表顺序探测，结果天然有序
+            Map<String, int[]> table = buildHashTable(right, rightPositions, rightKey);
+            IntFunction<DataContainerInterface> reader = left.newReader();
+            for (int leftRank = 0; leftRank < leftPositions.length; leftRank++) {
+                int[] rightRanks = table.get(reader.apply(leftPositions[leftRank]).getAsString(leftKey));
+                if (rightRanks == null) {
+                    continue;
+                }
+                for (int j = 1; j <= rightRanks[0]; j++) {
+                    if (size == pairs.length) {
+                        pairs = Arrays.copyOf(pairs, Math.max(16, size * 2));
+                    }
+                    pairs[size++] = (long) leftRank << 32 | rightRanks[j];
+                }
+            }
+        } else {
+            // 左表建哈希表，按右表顺序探测，最后按左表顺序排序
+            Map<String, int[]> table = buildHashTable(left, leftPositions, leftKey);
+            IntFunction<DataContainerInterface> reader = right.newReader();
+            for (int rightRank = 0; rightRank < rightPositions.length; rightRank++) {
+                int[] leftRanks = table.get(reader.apply(rightPositions[rightRank]).getAsString(rightKey));
+                if (leftRanks == null) {
+                    continue;
+                }
+                for (int j = 1; j <= leftRanks[0]; j++) {
+                    if (size == pairs.length) {
+                        pairs = Arrays.copyOf(pairs, Math.max(16, size * 2));
+                    }
+                    pairs[size++] = (long) leftRanks[j] << 32 | rightRank;
+                }
+            }
+            Arrays.sort(pairs, 0, size);
+        }
+
+        // 只为分页范围内的数据生成结果
+        int from = page == null ? 0 : Math.min(size, page.getStart() - 1);
+        int to = page == null ? size : (int) Math.min(size, (long) from + page.getPageSize());
+        DataContainer[] result = new DataContainer[to - from];
+        for (int i = from; i < to; i++) {
+            DataContainer dc = new DataContainer();
+            mergeProperties(dc, left.get(leftPositions[(int) (pairs[i] >>> 32)]));
+            mergeProperties(dc, right.get(rightPositions[(int) pairs[i]]));
+            result[i - from] = dc;
+        }
+        return result;
+    }
+
+    /**
+     * 按属性值建立哈希表，结构：属性值 -> [序号个数, 序号1, 序号2, ...]，序号为在positions中的下标
+     */
+    private static Map<String, int[]> buildHashTable(CacheSnapshot<?> snapshot, int[] positions, String field) {
+        Map<String, int[]> table = new HashMap<>(positions.length * 4 / 3 + 1);
+        IntFunction<DataContainerInterface> reader = snapshot.newReader();
+        for (int rank = 0; rank < positions.length; rank++) {
+            String key = reader.apply(positions[rank]).getAsString(field);
+            if (key == null) {
+                continue;
+            }
+            int[] ranks = table.get(key);
+            if (ranks == null) {
+                table.put(key, new int[]{1, rank});
+                continue;
+            }
+            if (ranks[0] + 1 == ranks.length) {
+                ranks = Arrays.copyOf(ranks, ranks.length * 2);
+                table.put(key, ranks);
+            }
+            ranks[++ranks[0]] = rank;
+        }
+        return table;
+    }
+
+    /**
+     * 复制bean中的属性，已存在的属性不覆盖
+     */
+    @SuppressWarnings("unchecked")
+    private static void mergeProperties(DataContainer dc, DataContainer bean) {
+        Map properties = dc.getProperties();
+        for (Object o : bean.getProperties().entrySet()) {
+            Map.Entry entry = (Map.Entry) o;
+            if (entry.getValue() != null && !properties.containsKey(entry.getKey())) {
+                dc.initProperty(entry.getKey().toString(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 在缓存快照中过滤数据，返回符合条件的数据下标（无排序条件时保持数据在缓存中的顺序）
+     * 先使用索引缩小范围，再按下标逐条读取属性值判断，列式存储时过滤过程不会生成bean
+     *
+     * @param cacheClass 缓存class，用于记录指标
+     * @param snapshot   缓存快照
+     * @param cond       查询条件
+     * @param condList   查询条件编译成的过滤条件
+     * @param order      排序条件，为null时不排序
+     * @param page       分页对象，为null时返回全部符合条件的数据下标
+     * @return 数据下标
+     */
+    private static int[] scan(Class<?> cacheClass, CacheSnapshot<?> snapshot, DataContainerInterface cond,
+                              List<CompiledPredicate> condList, RowOrder order, Pagination page) {
+        long startTime = System.nanoTime();
+        int[] candidates = lookupIndex(snapshot, cond);
+        int total = candidates == null ? snapshot.size() : candidates.length;
+        int skip = page == null ? 0 : page.getStart() - 1;
+        int limit = page == null ? Integer.MAX_VALUE : page.getPageSize();
+        // 有排序条件时需要所有符合条件的数据，排序后再分页
+        int filterSkip = order == null ? skip : 0;
+        int filterLimit = order == null ? limit : Integer.MAX_VALUE;
+        for (CompiledPredicate compiled : condList) {
+            // 在分块并行之前完成数字、时间属性的转换（同一快照只转换一次）
+            compiled.prepare(snapshot);
+        }
+        List<CompiledPredicate> predicate = condList.size() == 0 ? null : condList;
+        ScanResult result;
+        if (predicate != null && total >= MIN_CHUNK_SIZE * 2 && (long) total * getWeight(cond) >= parallelThreshold) {
+            // 数据量大、条件复杂时并行过滤
+            result = parallelScan(snapshot, candidates, total, predicate, filterSkip, filterLimit);
+        } else {
+            result = sequentialScan(snapshot, candidates, total, predicate, filterSkip, filterLimit);
+        }
+        int[] positions = order == null ? result.positions : order.sort(snapshot.newReader(), result.positions, skip, limit);
+        CacheMetrics.recordQuery(cacheClass, result.scanned, positions.length, System.nanoTime() - startTime);
+        return positions;
+    }
+
+    private static ScanResult sequentialScan(CacheSnapshot<?> snapshot, int[] candidates, int total,
+                                             List<CompiledPredicate> condList, int skip, int limit) {
+        IntPredicate predicate = condList == null ? null : bind(condList, snapshot);
+        int[] result = new int[Math.max(0, Math.min(total, limit))];
+        int matched = 0, size = 0, scanned = 0;
+        for (; scanned < total && size < result.length; scanned++) {
+            int position = candidates == null ? scanned : candidates[scanned];
+            if (predicate != null && !predicate.test(position)) {
+                continue;
+            }
+            if (matched++ >= skip) {
+                result[size++] = position;
+            }
+        }
+        return new ScanResult(size == result.length ? result : Arrays.copyOf(result, size), scanned);
+    }
+
+    /**
+     * 并行过滤：数据按下标分成若干块，每轮并行处理与并行度相同数量的块，
+     * 按块的顺序合并结果（保持数据顺序），已满足分页需要的数据量后不再处理后面的块
+     */
+    private static ScanResult parallelScan(CacheSnapshot<?> snapshot, int[] candidates, int total,
+                                           List<CompiledPredicate> condList, int skip, int limit) {
+        ForkJoinPool pool = getScanPool();
+        int parallelism = pool.getParallelism();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, total / (parallelism * 4));
+        int chunkCount = (total + chunkSize - 1) / chunkSize;
+        long needed = (long) skip + limit;
+
+        List<int[]> parts = new ArrayList<>(chunkCount);
+        long matched = 0;
+        int scanned = 0;
+        for (int wave = 0; wave < chunkCount && matched < needed; wave += parallelism) {
+            List<ForkJoinTask<int[]>> tasks = new ArrayList<>(parallelism);
+            for (int chunk = wave; chunk < Math.min(wave + parallelism, chunkCount); chunk++) {
+                int from = chunk * chunkSize, to = Math.min(from + chunkSize, total);
+                tasks.add(pool.submit(() -> scanChunk(snapshot, candidates, from, to, condList)));
+                scanned += to - from;
+            }
+            for (ForkJoinTask<int[]> task : tasks) {
+                int[] part = task.join();
+                parts.add(part);
+                matched += part.length;
+            }
+        }
+
+        int[] result = new int[(int) Math.max(0, Math.min(matched - skip, limit))];
+        int size = 0, toSkip = skip;
+        for (int[] part : parts) {
+            if (toSkip >= part.length) {
+                toSkip -= part.length;
+                continue;
+            }
+            int length = Math.min(part.length - toSkip, result.length - size);
+            System.arraycopy(part, toSkip, result, size, length);
+            size += length;
+            toSkip = 0;
+            if (size == result.length) {
+                break;
+            }
+        }
+        return new ScanResult(result, scanned);
+    }
+
+    private static int[] scanChunk(CacheSnapshot<?> snapshot, int[] candidates, int from, int to, List<CompiledPredicate> condList) {
+        // 读取器非线程安全，每个任务单独绑定
+        IntPredicate predicate = bind(condList, snapshot);
+        int[] result = new int[to - from];
+        int size = 0;
+        for (int i = from; i < to; i++) {
+            int position = candidates == null ? i : candidates[i];
+            if (predicate.test(position)) {
+                result[size++] = position;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * 条件的执行代价之和，用于判断是否并行过滤
+     */
+    private static int getWeight(DataContainerInterface cond) {
+        int weight = 0;
+        for (Object o : cond.getProperties().entrySet()) {
+            Map.Entry param = (Map.Entry) o;
+            String statement = param.getValue() == null ? "" : stripOrder(param.getValue().toString());
+            if (statement.length() > 0) {
+                weight += getPredicate(param.getKey().toString(), statement).cost + 1;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * 设置并行过滤的阈值：待过滤的数据量 × 条件执行代价之和 达到该值时并行过滤
+     *
+     * @param threshold 阈值，默认{@link #DEFAULT_PARALLEL_THRESHOLD}，设为Long.MAX_VALUE可关闭并行过滤
+     */
+    public static void setParallelThreshold(long threshold) {
+        parallelThreshold = threshold;
+    }
+
+    private static ForkJoinPool getScanPool() {
+        if (scanPool == null) {
+            synchronized (DataEngine.class) {
+                if (scanPool == null) {
+                    scanPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                        thread.setName("easyframe-scan-" + thread.getPoolIndex());
+                        return thread;
+                    }, null, false);
+                }
+            }
+        }
+        return scanPool;
+    }
+
+    /**
+     * 设置查询结果缓存的条数
+     *
+     * @param size 条数，默认{@link #DEFAULT_MEMO_SIZE}，设为0关闭查询结果缓存
+     */
+    public static void setMemoSize(int size) {
+        memoSize = size;
+        if (size <= 0) {
+            MEMO.clear();
+        } else {
+            evictMemo();
+        }
+    }
+
+    /**
+     * 生成查询结果缓存的key，查询条件按属性名排序，忽略空值
+     */
+    private static String getMemoKey(Class<?> cacheClass, CacheSnapshot<?> snapshot, DataContainerInterface cond, Pagination page) {
+        if (memoSize <= 0) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(cacheClass.getName()).append('\0').append(snapshot.getVersion()).append('\0');
+        if (cond != null) {
+            Map<String, String> params = new TreeMap<>();
+            for (Object o : cond.getProperties().entrySet()) {
+                Map.Entry param = (Map.Entry) o;
+                if (param.getValue() != null && !"".equals(param.getValue())) {
+                    params.put(param.getKey().toString(), param.getValue().toString());
+                }
+            }
+            params.forEach((field, statement) -> key.append(field).append('=').append(statement).append('\0'));
+        }
+        if (page != null) {
+            key.append(page.getStart()).append(',').append(page.getPageSize());
+        }
+        return key.toString();
+    }
+
+    private static int[] getMemo(Class<?> cacheClass, String memoKey) {
+        if (memoKey == null) {
+            return null;
+        }
+        long startTime = System.nanoTime();
+        Memo memo = MEMO.get(memoKey);
+        int[] positions = null;
+        if (memo != null) {
+            memo.lastAccess = startTime;
+            positions = memo.positions;
+        }
+        CacheMetrics.recordMemo(cacheClass, positions != null);
+        if (positions != null) {
+            CacheMetrics.recordQuery(cacheClass, 0, positions.length, System.nanoTime() - startTime);
+        }
+        return positions;
+    }
+
+    private static void putMemo(String memoKey, int[] positions) {
+        if (memoKey == null || positions.length > MAX_MEMO_ROWS) {
+            return;
+        }
+        MEMO.put(memoKey, new Memo(positions));
+        if (MEMO.size() > memoSize) {
+            evictMemo();
+        }
+    }
+
+    /**
+     * 淘汰最久未访问的查询结果，直到条数不超过上限的3/4；其他线程正在淘汰时直接返回
+     */
+    private static void evictMemo() {
+        if (!MEMO_EVICTING.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int target = memoSize * 3 / 4;
+            if (MEMO.size() <= memoSize) {
+                return;
+            }
+            // 先取出访问时间再排序，避免排序过程中访问时间变化
+            List<Object[]> entries = new ArrayList<>(MEMO.size());
+            MEMO.forEach((key, memo) -> entries.add(new Object[]{key, memo, memo.lastAccess}));
+            entries.sort(Comparator.comparingLong(entry -> (Long) entry[2]));
+            for (int i = 0; i < entries.size() - target; i++) {
+                MEMO.remove((String) entries.get(i)[0], entries.get(i)[1]);
+            }
+        } finally {
+            MEMO_EVICTING.set(false);
+        }
+    }
+
+    /**
+     * 查询结果缓存的一条数据
+     */
+    private static class Memo {
+        private final int[] positions;
+        private volatile long lastAccess;
+
+        private Memo(int[] positions) {
+            this.positions = positions;
+            this.lastAccess = System.nanoTime();
+        }
+    }
+
+    /**
+     * 使用缓存索引缩小查询范围
+     * 支持哈希索引（等值、in）和有序索引（范围条件），
+     * 条件中有多个属性可以使用索引时，取命中数据最少的一个；结果仍需经过完整的条件过滤
+     *
+     * @param snapshot 缓存快照
+     * @param cond     查询条件
+     * @return 索引命中的数据下标（升序），没有可用的索引时返回null
+     */
+    private static int[] lookupIndex(CacheSnapshot<?> snapshot, DataContainerInterface cond) {
+        if (cond == null) {
+            return null;
+        }
+        int[] positions = null;
+        for (Object o : cond.getProperties().entrySet()) {
+            Map.Entry param = (Map.Entry) o;
+            String statement = param.getValue() == null ? "" : stripOrder(param.getValue().toString());
+            if (statement.length() == 0) {
+                continue;
+            }
+            String field = param.getKey().toString();
+            int[] hit = null;
+            if (snapshot.hasHashIndex(field)) {
+                if (statement.startsWith(Query.IN)) {
+                    hit = snapshot.lookup(field, Arrays.asList(statement.substring(Query.IN.length()).split(",")));
+                } else if (isEqualCond(statement)) {
+                    hit = snapshot.lookup(field, Collections.singletonList(statement));
+                }
+            }
+            if (hit == null && snapshot.hasSortedIndex(field) && isRangeCond(statement)) {
+                RangeCond range = parseRange(statement);
+                hit = snapshot.lookupRange(field, range.lower, range.lowerInclusive, range.upper, range.upperInclusive);
+            }
+            if (hit != null && (positions == null || hit.length < positions.length)) {
+                positions = hit;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * 是否是普通的等值条件（不含Query表达式）
+     */
+    private static boolean isEqualCond(String statement) {
+        if (statement.contains(Query.AND) || statement.contains(Query.OR) || statement.contains(":orderBy")) {
+            return false;
+        }
+        String type = statement.substring(0, statement.indexOf(":") + 1);
+        switch (type) {
+            case Query.IN:
+            case Query.NOT_IN:
+            case Query.IS_NULL:
+            case Query.IS_NOT_NULL:
+            case Query.LT:
+            case Query.GT:
+            case Query.LTE:
+            case Query.GTE:
+            case Query.BETWEEN:
+            case Query.LIKE:
+            case Query.NOT_LIKE:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 是否是单个范围条件（<、>、<=、>=、between）
+     */
+    private static boolean isRangeCond(String statement) {
+        if (statement.contains(Query.AND) || statement.contains(Query.OR) || statement.contains(":orderBy")) {
+            return false;
+        }
+        return statement.startsWith(Query.LT) || statement.startsWith(Query.GT) || statement.startsWith(Query.LTE)
+                || statement.startsWith(Query.GTE) || statement.startsWith(Query.BETWEEN);
+    }
+
+    @SuppressWarnings("unchecked")
     private static <T extends DataContainerInterface> List<Predicate<T>> bean2List(DataContainerInterface cond) {
-        List<Predicate<T>> condList = new ArrayList<>();
+        List<CompiledPredicate> compiledList = compileConditions(cond);
+        List<Predicate<T>> condList = new ArrayList<>(compiledList.size());
+        for (CompiledPredicate compiled : compiledList) {
+            condList.add((Predicate<T>) compiled.predicate);
+        }
+        return condList;
+    }
+
+    /**
+     * 查询条件编译成过滤条件，按执行代价排序
+     */
+    private static List<CompiledPredicate> compileConditions(DataContainerInterface cond) {
+        List<CompiledPredicate> compiledList = new ArrayList<>();
         if (cond != null) {
             // 1.处理条件
             Map params = cond.getProperties();
@@ -123,96 +817,690 @@ public class DataEngine {
                     // 空的时候代表用户没有传值，应忽略
                     continue;
                 }
-                // 属性名，属性值（Query条件）
-                String paramName = param.getKey().toString(), paramValue = param.getValue().toString();
-                condList.add(getPredicate(paramName, paramValue));
+                // 属性名，属性值（Query条件，排序条件由RowOrder处理）
+                String paramName = param.getKey().toString(), paramValue = stripOrder(param.getValue().toString());
+                if (paramValue.length() == 0) {
+                    // 只有排序条件
+                    continue;
+                }
+                compiledList.add(getPredicate(paramName, paramValue));
             }
         }
-        return condList;
+        // 2.代价低、筛选性强的条件排在前面，组合后先执行
+        compiledList.sort(Comparator.comparingInt(compiled -> compiled.cost));
+        return compiledList;
+    }
+
+    /**
+     * 把过滤条件绑定到缓存快照上，组合成按数据下标判断的过滤条件
+     * 返回的过滤条件使用同一个读取器，非线程安全，每个线程需单独绑定
+     */
+    private static IntPredicate bind(List<CompiledPredicate> condList, CacheSnapshot<?> snapshot) {
+        IntFunction<DataContainerInterface> reader = snapshot.newReader();
+        IntPredicate result = null;
+        for (CompiledPredicate compiled : condList) {
+            IntPredicate predicate = compiled.bind(snapshot, reader);
+            result = result == null ? predicate : result.and(predicate);
+        }
+        return result;
+    }
+
+    /**
+     * 去掉条件语句中的排序条件，如 "in:1,2:orderByAsc-0" 返回 "in:1,2"
+     */
+    private static String stripOrder(String statement) {
+        if (!statement.contains(":orderBy")) {
+            return statement;
+        }
+        return PATTERN_ORDER.matcher(statement).replaceFirst("");
+    }
+
+    /**
+     * 获取条件对应的过滤器，相同的(属性名, 条件语句)只编译一次
+     */
+    private static CompiledPredicate getPredicate(String field, String statement) {
+        String cacheKey = field + '\0' + statement;
+        CompiledPredicate compiled = PREDICATE_CACHE.get(cacheKey);
+        if (compiled == null) {
+            compiled = compile(field, statement);
+            if (PREDICATE_CACHE.size() >= MAX_PREDICATE_CACHE_SIZE) {
+                PREDICATE_CACHE.clear();
+            }
+            PREDICATE_CACHE.put(cacheKey, compiled);
+        }
+        return compiled;
     }
 
-    private static <T extends DataContainerInterface> Predicate<T> getPredicate(String field, String statement) {
+    private static CompiledPredicate compile(String field, String statement) {
         String type = statement.substring(0, statement.indexOf(":") + 1);
         switch (type) {
             case Query.IN: {
                 // in:1,2,3
-                List<String> list = Arrays.asList(statement.substring(Query.IN.length()).split(","));
-                return bo -> list.contains(bo.getAsString(field));
+                Set<String> set = new HashSet<>(Arrays.asList(statement.substring(Query.IN.length()).split(",")));
+                return new CompiledPredicate(bo -> set.contains(bo.getAsString(field)), CompiledPredicate.IN);
             }
             case Query.NOT_IN: {
                 // not-in:1,2,3
-                List<String> list = Arrays.asList(statement.substring(Query.NOT_IN.length()).split(","));
-                return bo -> !list.contains(bo.getAsString(field));
+                Set<String> set = new HashSet<>(Arrays.asList(statement.substring(Query.NOT_IN.length()).split(",")));
+                return new CompiledPredicate(bo -> !set.contains(bo.getAsString(field)), CompiledPredicate.NOT_IN);
             }
             case Query.LT:
             case Query.GT:
             case Query.LTE:
             case Query.GTE:
-                throw new RuntimeException("暂不支持缓存查询中使用表达式" + type + "，请联系Robot增加功能");
-            case Query.BETWEEN:
-                return handleBetweenCond(field, statement);
+            case Query.BETWEEN: {
+                RangeCond range = parseRange(statement);
+                return new CompiledPredicate(range.toPredicate(field), CompiledPredicate.RANGE, field, range);
+            }
             case Query.LIKE: {
-                String regex = statement.substring(Query.LIKE.length())
-                        // 所有正则特殊符号进行转义 ^$*.|()\
-                        .replaceAll("[\\^$*+?.|()\\\\]", "[$0]")
-                        .replaceAll("%", ".*")
-                        .replaceAll("_", ".");
-                Pattern pattern = Pattern.compile(regex);
-                return bo -> bo.getAsString(field) != null && pattern.matcher(bo.getAsString(field)).matches();
+                LikeMatcher matcher = new LikeMatcher(statement.substring(Query.LIKE.length()));
+                return new CompiledPredicate(bo -> matcher.matches(bo.getAsString(field)), matcher.cost);
             }
             case Query.NOT_LIKE: {
-                String regex = statement.substring(Query.NOT_LIKE.length())
+                LikeMatcher matcher = new LikeMatcher(statement.substring(Query.NOT_LIKE.length()));
+                return new CompiledPredicate(bo -> {
+                    String value = bo.getAsString(field);
+                    return value != null && !matcher.matches(value);
+                }, CompiledPredicate.NOT_LIKE);
+            }
+            default:
+                return new CompiledPredicate(bo -> statement.equals(bo.getAsString(field)), CompiledPredicate.EQUAL);
+        }
+    }
+
+    /**
+     * 过滤结果
+     */
+    private static class ScanResult {
+        /**
+         * 符合条件的数据下标
+         */
+        private final int[] positions;
+        /**
+         * 逐条判断过的数据条数
+         */
+        private final int scanned;
+
+        private ScanResult(int[] positions, int scanned) {
+            this.positions = positions;
+            this.scanned = scanned;
+        }
+    }
+
+    /**
+     * 多字段排序，排序规则与DaoEngine生成的order by保持一致：
+     * 按Query.orderByAsc(n)/orderByDesc(n)的顺序n依次比较，null视为最大值（同Oracle，升序排在最后，降序排在最前），
+     * 所有排序字段都相同时保持数据原来的顺序
+     */
+    private static class RowOrder {
+        private final String[] fields;
+        private final boolean[] desc;
+
+        private RowOrder(String[] fields, boolean[] desc) {
+            this.fields = fields;
+            this.desc = desc;
+        }
+
+        /**
+         * 解析查询条件中的排序条件
+         *
+         * @return 排序条件，没有排序条件时返回null
+         */
+        private static RowOrder parse(DataContainerInterface cond) {
+            if (cond == null) {
+                return null;
+            }
+            // 结构[[顺序，属性名，排序方式],...]
+            List<String[]> orderConditions = new ArrayList<>();
+            for (Object o : cond.getProperties().entrySet()) {
+                Map.Entry param = (Map.Entry) o;
+                if (param.getValue() == null) {
+                    continue;
+                }
+                Matcher matcher = PATTERN_ORDER.matcher(param.getValue().toString());
+                if (matcher.find()) {
+                    orderConditions.add(new String[]{matcher.group(2), param.getKey().toString(), matcher.group(1)});
+                }
+            }
+            if (orderConditions.size() == 0) {
+                return null;
+            }
+            orderConditions.sort(Comparator.comparingInt(order -> order[0].length() == 0 ? 0 : Integer.parseInt(order[0])));
+            String[] fields = new String[orderConditions.size()];
+            boolean[] desc = new boolean[orderConditions.size()];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = orderConditions.get(i)[1];
+                desc[i] = "Desc".equals(orderConditions.get(i)[2]);
+            }
+            return new RowOrder(fields, desc);
+        }
+
+        /**
+         * 对数据下标排序并分页
+         * 需要的数据量（skip + limit）小于数据总量时使用大小为skip + limit的堆取前K条，否则全部排序
+         *
+         * @param reader    按下标读取数据
+         * @param positions 数据下标（升序）
+         * @param skip      跳过的条数
+         * @param limit     返回的最大条数
+         * @return 排序、分页后的数据下标
+         */
+        private int[] sort(IntFunction<? extends DataContainerInterface> reader, int[] positions, int skip, int limit) {
+            long needed = (long) skip + limit;
+            SortKey[] sorted;
+            if (needed >= positions.length) {
+                sorted = new SortKey[positions.length];
+                for (int i = 0; i < positions.length; i++) {
+                    sorted[i] = new SortKey(positions[i], readKeys(reader.apply(positions[i]), new Object[fields.length]));
+                }
+                // 归并排序，排序字段相同时保持原来的顺序
+                Arrays.sort(sorted, this::compare);
+            } else {
+                sorted = topK(reader, positions, (int) needed);
+            }
+            int from = Math.min(skip, sorted.length), to = (int) Math.min(needed, sorted.length);
+            int[] result = new int[to - from];
+            for (int i = from; i < to; i++) {
+                result[i - from] = sorted[i].position;
+            }
+            return result;
+        }
+
+        /**
+         * 取排在最前面的k条数据（已排序），堆顶为当前k条中排在最后的一条，
+         * 新数据排在堆顶之前时才替换堆顶，只为进入堆的数据保存排序字段的值
+         */
+        private SortKey[] topK(IntFunction<? extends DataContainerInterface> reader, int[] positions, int k) {
+            if (k <= 0) {
+                return new SortKey[0];
+            }
+            PriorityQueue<SortKey> heap = new PriorityQueue<>(k, (a, b) -> compare(b, a));
+            Object[] keys = new Object[fields.length];
+            for (int position : positions) {
+                readKeys(reader.apply(position), keys);
+                if (heap.size() < k) {
+                    heap.add(new SortKey(position, keys.clone()));
+                } else if (compare(keys, position, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(new SortKey(position, keys.clone()));
+                }
+            }
+            SortKey[] result = heap.toArray(new SortKey[0]);
+            Arrays.sort(result, this::compare);
+            return result;
+        }
+
+        private Object[] readKeys(DataContainerInterface bo, Object[] keys) {
+            for (int i = 0; i < fields.length; i++) {
+                Object value = bo.get(fields[i]);
+                if (value instanceof java.util.Date) {
+                    value = ((java.util.Date) value).getTime();
+                } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                    value = ((Number) value).longValue();
+                }
+                keys[i] = value;
+            }
+            return keys;
+        }
+
+        private int compare(SortKey a, SortKey b) {
+            return compare(a.keys, a.position, b);
+        }
+
+        private int compare(Object[] keys, int position, SortKey other) {
+            for (int i = 0; i < fields.length; i++) {
+                int compare = compareValue(keys[i], other.keys[i]);
+                if (compare != 0) {
+                    return desc[i] ? -compare : compare;
+                }
+            }
+            return Integer.compare(position, other.position);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static int compareValue(Object a, Object b) {
+            if (a == b) {
+                return 0;
+            }
+            if (a == null) {
+                return 1;
+            }
+            if (b == null) {
+                return -1;
+            }
+            if (a instanceof Long && b instanceof Long) {
+                return Long.compare((Long) a, (Long) b);
+            }
+            if (a instanceof Number && b instanceof Number) {
+                return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+            }
+            if (a.getClass() == b.getClass() && a instanceof Comparable) {
+                return ((Comparable) a).compareTo(b);
+            }
+            return a.toString().compareTo(b.toString());
+        }
+    }
+
+    /**
+     * 排序时保存的数据下标及排序字段的值
+     */
+    private static class SortKey {
+        private final int position;
+        private final Object[] keys;
+
+        private SortKey(int position, Object[] keys) {
+            this.position = position;
+            this.keys = keys;
+        }
+    }
+
+    /**
+     * 分组聚合的中间结果
+     */
+    private static class Group {
+        /**
+         * 分组属性值
+         */
+        private final Object[] keys;
+        /**
+         * 各聚合函数的当前值：count为Long，sum为Long或BigDecimal，min/max为属性值，count distinct为Set
+         */
+        private final Object[] values;
+
+        private Group(Object[] keys, Aggregate[] aggregates) {
+            this.keys = keys;
+            this.values = new Object[aggregates.length];
+            for (int i = 0; i < aggregates.length; i++) {
+                if (Aggregate.COUNT.equals(aggregates[i].getType())) {
+                    values[i] = 0L;
+                } else if (Aggregate.COUNT_DISTINCT.equals(aggregates[i].getType())) {
+                    values[i] = new HashSet<String>();
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void add(DataContainerInterface bo, Aggregate[] aggregates) {
+            for (int i = 0; i < aggregates.length; i++) {
+                Aggregate aggregate = aggregates[i];
+                switch (aggregate.getType()) {
+                    case Aggregate.COUNT:
+                        values[i] = (Long) values[i] + 1;
+                        break;
+                    case Aggregate.COUNT_DISTINCT: {
+                        String value = bo.getAsString(aggregate.getField());
+                        if (value != null) {
+                            ((Set<String>) values[i]).add(value);
+                        }
+                        break;
+                    }
+                    default: {
+                        Object value = bo.get(aggregate.getField());
+                        if (value != null) {
+                            values[i] = accumulate(aggregate, values[i], value);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * 合并另一块数据中同一分组的结果
+         */
+        @SuppressWarnings("unchecked")
+        private void merge(Group other, Aggregate[] aggregates) {
+            for (int i = 0; i < aggregates.length; i++) {
+                Aggregate aggregate = aggregates[i];
+                switch (aggregate.getType()) {
+                    case Aggregate.COUNT:
+                        values[i] = (Long) values[i] + (Long) other.values[i];
+                        break;
+                    case Aggregate.COUNT_DISTINCT:
+                        ((Set<String>) values[i]).addAll((Set<String>) other.values[i]);
+                        break;
+                    default:
+                        if (values[i] == null) {
+                            values[i] = other.values[i];
+                        } else if (other.values[i] != null) {
+                            values[i] = accumulate(aggregate, values[i], other.values[i]);
+                        }
+                }
+            }
+        }
+
+        private static Object accumulate(Aggregate aggregate, Object current, Object value) {
+            switch (aggregate.getType()) {
+                case Aggregate.SUM:
+                    return sum(aggregate, current, value);
+                case Aggregate.MIN:
+                    return current == null || RowOrder.compareValue(value, current) < 0 ? value : current;
+                case Aggregate.MAX:
+                    return current == null || RowOrder.compareValue(value, current) > 0 ? value : current;
+                default:
+                    throw new RuntimeException("不支持的聚合函数：" + aggregate.getType());
+            }
+        }
+
+        /**
+         * 求和：整数用long累加，有小数或溢出时改用BigDecimal
+         */
+        private static Object sum(Aggregate aggregate, Object current, Object value) {
+            if (current == null) {
+                current = 0L;
+            }
+            if (current instanceof Long && (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)) {
+                long a = (Long) current, b = ((Number) value).longValue(), result = a + b;
+                // 溢出时改用BigDecimal
+                if (((a ^ result) & (b ^ result)) >= 0) {
+                    return result;
+                }
+            }
+            try {
+                return toDecimal(current).add(toDecimal(value));
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("属性" + aggregate.getField() + "的值不是数字：" + value, e);
+            }
+        }
+
+        private static BigDecimal toDecimal(Object value) {
+            return value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+        }
+
+        @SuppressWarnings("unchecked")
+        private DataContainer toDc(String[] groupBy, Aggregate[] aggregates) {
+            DataContainer dc = new DataContainer();
+            for (int i = 0; i < groupBy.length; i++) {
+                if (keys[i] != null) {
+                    dc.initProperty(groupBy[i], keys[i]);
+                }
+            }
+            for (int i = 0; i < aggregates.length; i++) {
+                Object value = values[i];
+                if (value instanceof Set) {
+                    value = (long) ((Set<String>) value).size();
+                }
+                if (value != null) {
+                    dc.initProperty(aggregates[i].getAlias(), value);
+                }
+            }
+            return dc;
+        }
+    }
+
+    /**
+     * 编译好的过滤条件
+     */
+    private static class CompiledPredicate {
+        /**
+         * 执行代价（越小越先执行），综合考虑了判断的开销和通常的筛选性
+         */
+        private static final int EQUAL = 0;
+        private static final int IN = 1;
+        private static final int RANGE = 2;
+        private static final int LIKE_PREFIX = 3;
+        private static final int LIKE_CONTAINS = 4;
+        private static final int LIKE_REGEX = 5;
+        private static final int NOT_IN = 6;
+        private static final int NOT_LIKE = 7;
+
+        private final Predicate<DataContainerInterface> predicate;
+        private final int cost;
+        /**
+         * 范围条件的属性名和边界，其他条件为null
+         */
+        private final String field;
+        private final RangeCond range;
+
+        private CompiledPredicate(Predicate<DataContainerInterface> predicate, int cost) {
+            this(predicate, cost, null, null);
+        }
+
+        private CompiledPredicate(Predicate<DataContainerInterface> predicate, int cost, String field, RangeCond range) {
+            this.predicate = predicate;
+            this.cost = cost;
+            this.field = field;
+            this.range = range;
+        }
+
+        /**
+         * 数字、时间的范围条件预先取得转换成long的属性值
+         */
+        private void prepare(CacheSnapshot<?> snapshot) {
+            if (range != null && range.isLong()) {
+                snapshot.getLongValues(field, range.isTime());
+            }
+        }
+
+        /**
+         * 绑定到缓存快照：数字、时间的范围条件直接比较转换好的long值（属性中有小数时除外），其他条件通过读取器读取属性值判断
+         */
+        private IntPredicate bind(CacheSnapshot<?> snapshot, IntFunction<DataContainerInterface> reader) {
+            LongValues values = range != null && range.isLong() ? snapshot.getLongValues(field, range.isTime()) : null;
+            if (values != null) {
+                return range.toPredicate(values);
+            }
+            return position -> predicate.test(reader.apply(position));
+        }
+    }
+
+    /**
+     * like条件的匹配器（%匹配任意个字符，_匹配单个字符）
+     * 不含_时按%拆分成若干段，依次用startsWith/indexOf/endsWith匹配，不使用正则
+     */
+    private static class LikeMatcher {
+        private final String[] segments;
+        private final Pattern pattern;
+        private final int cost;
+
+        private LikeMatcher(String like) {
+            if (like.contains("_")) {
+                String regex = like
                         // 所有正则特殊符号进行转义 ^$*.|()\
                         .replaceAll("[\\^$*+?.|()\\\\]", "[$0]")
                         .replaceAll("%", ".*")
                         .replaceAll("_", ".");
-                Pattern pattern = Pattern.compile(regex);
-                return bo -> bo.getAsString(field) != null && !pattern.matcher(bo.getAsString(field)).matches();
+                this.pattern = Pattern.compile(regex);
+                this.segments = null;
+                this.cost = CompiledPredicate.LIKE_REGEX;
+            } else {
+                // 保留首尾的空段：首段为空表示不限开头，尾段为空表示不限结尾
+                this.segments = like.split("%", -1);
+                this.pattern = null;
+                this.cost = segments.length <= 2 ? CompiledPredicate.LIKE_PREFIX : CompiledPredicate.LIKE_CONTAINS;
             }
-            default:
-                return (bo -> statement.equals(bo.getAsString(field)));
         }
-    }
 
-    private static boolean isTimeBetween(String destTime, String startTime, String endTime) {
-        try {
-            Timestamp startFinalValue = Convert.toTimeStamp(startTime);
-            Timestamp endFinalValue = Convert.toTimeStamp(endTime);
-            Timestamp destTimeStamp = Convert.toTimeStamp(destTime);
-            return destTimeStamp.compareTo(startFinalValue) >= 0 && destTimeStamp.compareTo(endFinalValue) <= 0;
-        } catch (Exception e) {
-            log.error("between语句解析：日期转换失败！at DaoEngine.handleSqlSnippet()");
-            return false;
+        private boolean matches(String value) {
+            if (value == null) {
+                return false;
+            }
+            if (pattern != null) {
+                return pattern.matcher(value).matches();
+            }
+            if (segments.length == 1) {
+                // 没有%
+                return value.equals(segments[0]);
+            }
+            String first = segments[0], last = segments[segments.length - 1];
+            if (value.length() < first.length() + last.length() || !value.startsWith(first) || !value.endsWith(last)) {
+                return false;
+            }
+            int from = first.length(), to = value.length() - last.length();
+            for (int i = 1; i < segments.length - 1; i++) {
+                if (segments[i].isEmpty()) {
+                    continue;
+                }
+                int index = value.indexOf(segments[i], from);
+                if (index < 0 || index + segments[i].length() > to) {
+                    return false;
+                }
+                from = index + segments[i].length();
+            }
+            return true;
         }
+    }
 
+    /**
+     * 解析范围条件（<、>、<=、>=、between），边界值只在这里转换一次
+     * 比较规则与DaoEngine生成的sql保持一致
+     *
+     * @param statement Query条件语句，如 ">=:num:100" 或 "between:date:2019-01-01,2019-01-31"
+     * @return 范围条件
+     */
+    private static RangeCond parseRange(String statement) {
+        String type = statement.substring(0, statement.indexOf(":") + 1);
+        // 数据类型：num/str/date/time
+        String dataType = statement.substring(type.length(), StringUtils.ordinalIndexOf(statement, ":", 2));
+        String value = statement.substring(StringUtils.ordinalIndexOf(statement, ":", 2) + 1);
+        RangeCond range = new RangeCond(dataType);
+        switch (type) {
+            case Query.LT:
+                range.upper = range.parse(value, false);
+                range.upperInclusive = false;
+                break;
+            case Query.LTE:
+                range.upper = range.parse(value, true);
+                break;
+            case Query.GT:
+                range.lower = range.parse(value, true);
+                range.lowerInclusive = false;
+                break;
+            case Query.GTE:
+                range.lower = range.parse(value, false);
+                break;
+            default:
+                // between:num:1,10
+                String startValue = value.substring(0, value.indexOf(","));
+                String endValue = value.substring(value.indexOf(",") + 1);
+                range.lower = range.parse(startValue, false);
+                range.upper = range.parse(endValue, true);
+                value = startValue;
+        }
+        range.length = value.length();
+        return range;
     }
 
-    private static <T extends DataContainerInterface> Predicate<T> handleBetweenCond(String fieldName, String statement) {
-        String startValue = statement.substring(StringUtils.ordinalIndexOf(statement, ":", 2) + 1, statement.indexOf(","));
-        String endValue = statement.substring(statement.indexOf(",") + 1);
+    /**
+     * 范围条件
+     */
+    private static class RangeCond {
+        private static final String NUM = "num";
+        private static final String STR = "str";
+        private static final String DATE = "date";
+        private static final String TIME = "time";
 
-        boolean isString = Pattern.matches(".*str:.*", statement);
-        boolean isDate = !isString && Pattern.matches(".*date:.*", statement);
-        boolean isTime = Pattern.matches(".*time:.*", statement);
-        boolean isNumber = !isString && !isDate && Pattern.matches(".*num:.*", statement);
-        if (isDate) {
-            return bo -> isTimeBetween(bo.getAsString(fieldName), startValue + " 00:00:00", endValue + " 23:59:59");
+        private final String dataType;
+        /**
+         * 上下界：date/time为Long（毫秒数），num为整数时是Long、有小数时是BigDecimal，str为String，null表示不限
+         */
+        private Comparable lower;
+        private Comparable upper;
+        private boolean lowerInclusive = true;
+        private boolean upperInclusive = true;
+        /**
+         * 字符串比较时要求长度一致（同DaoEngine），否则查between('111','322')会查出'2222'
+         */
+        private int length;
 
+        private RangeCond(String dataType) {
+            this.dataType = dataType;
         }
-        if (isTime) {
-            return bo -> isTimeBetween(bo.getAsString(fieldName), startValue, endValue);
+
+        /**
+         * 转换边界值
+         *
+         * @param value    边界值
+         * @param endOfDay 日期类型是否取当天的23:59:59（用于<=、>和between的结束日期）
+         */
+        private Comparable parse(String value, boolean endOfDay) {
+            switch (dataType) {
+                case NUM:
+                    BigDecimal decimal = new BigDecimal(value.trim());
+                    try {
+                        return decimal.longValueExact();
+                    } catch (ArithmeticException e) {
+                        // 有小数或超出long范围
+                        return decimal;
+                    }
+                case DATE:
+                    return Convert.toTimeStamp(value + (endOfDay ? " 23:59:59" : " 00:00:00")).getTime();
+                case TIME:
+                    return Convert.toTimeStamp(value).getTime();
+                default:
+                    return value;
+            }
         }
-        if (isNumber) {
-            return bo -> (bo.get(fieldName) != null
-                    && bo.getAsLong(fieldName) >= Long.parseLong(startValue))
-                    && bo.getAsLong(fieldName) <= Long.parseLong(endValue);
+
+        /**
+         * 获取bean中的属性值，转换成与边界可比较的类型（数字为BigDecimal），无法转换时返回null
+         */
+        private Comparable getValue(DataContainerInterface bo, String field) {
+            switch (dataType) {
+                case NUM:
+                    return Convert.toDecimal(bo.get(field));
+                case DATE:
+                case TIME:
+                    return Convert.toMillis(bo.get(field));
+                default:
+                    String value = bo.getAsString(field);
+                    return value == null || value.length() != length ? null : value;
+            }
         }
-        if (isString) {
-            return bo -> bo.get(fieldName) != null
-                    && bo.getAsString(fieldName).compareTo(startValue) >= 0
-                    && bo.getAsString(fieldName).compareTo(endValue) <= 0;
+
+        /**
+         * 是否是数字或时间，且边界都为Long（可以按long比较）
+         */
+        private boolean isLong() {
+            if (NUM.equals(dataType)) {
+                return !(lower instanceof BigDecimal) && !(upper instanceof BigDecimal);
+            }
+            return DATE.equals(dataType) || TIME.equals(dataType);
+        }
+
+        private boolean isTime() {
+            return DATE.equals(dataType) || TIME.equals(dataType);
+        }
+
+        /**
+         * 按数据下标判断的过滤条件，只用于数字和时间
+         */
+        private IntPredicate toPredicate(LongValues values) {
+            long lowerValue = lower == null ? Long.MIN_VALUE : (Long) lower;
+            long upperValue = upper == null ? Long.MAX_VALUE : (Long) upper;
+            boolean lowerEqual = lower == null || lowerInclusive, upperEqual = upper == null || upperInclusive;
+            return position -> {
+                if (values.isNull(position)) {
+                    return false;
+                }
+                long value = values.get(position);
+                return (value > lowerValue || (lowerEqual && value == lowerValue))
+                        && (value < upperValue || (upperEqual && value == upperValue));
+            };
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T extends DataContainerInterface> Predicate<T> toPredicate(String field) {
+            // 数字按BigDecimal比较，不会截断小数
+            Comparable lower = NUM.equals(dataType) && this.lower != null ? new BigDecimal(this.lower.toString()) : this.lower;
+            Comparable upper = NUM.equals(dataType) && this.upper != null ? new BigDecimal(this.upper.toString()) : this.upper;
+            return bo -> {
+                Comparable value = getValue(bo, field);
+                if (value == null) {
+                    return false;
+                }
+                if (lower != null) {
+                    int compare = value.compareTo(lower);
+                    if (compare < 0 || (compare == 0 && !lowerInclusive)) {
+                        return false;
+                    }
+                }
+                if (upper != null) {
+                    int compare = value.compareTo(upper);
+                    return compare < 0 || (compare == 0 && upperInclusive);
+                }
+                return true;
+            };
         }
-        return bo -> false;
     }
 
 }
@@ -0,0 +1,190 @@
+package com.robot.easyframe.core.metrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 缓存及Dao的指标统计
+ * <p>
+ * 1.每个缓存、每个Dao首次产生指标时注册JMX MBean：com.robot.easyframe:type=Cache,name={缓存类名} 和 com.robot.easyframe:type=Dao,name={Dao类名}
+ * 2.需要对接其他监控系统时，实现{@link MetricsListener}并通过{@link #addListener(MetricsListener)}注册
+ *
+ * @author luozhan
+ * @date 2020-03
+ */
+public class CacheMetrics {
+    private static Log log = LogFactory.getLog(CacheMetrics.class);
+
+    public static final String DOMAIN = "com.robot.easyframe";
+
+    private static final Map<String, CacheStats> CACHE_STATS = new ConcurrentHashMap<>();
+
+    private static final Map<String, DaoStats> DAO_STATS = new ConcurrentHashMap<>();
+
+    private static final List<MetricsListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private static volatile boolean enabled = true;
+
+    /**
+     * 开启或关闭指标统计（默认开启）
+     */
+    public static void setEnabled(boolean enabled) {
+        CacheMetrics.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void addListener(MetricsListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(MetricsListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * 记录一次缓存查询
+     *
+     * @param cacheClass   缓存class
+     * @param rowsScanned  逐条判断过的数据条数
+     * @param rowsReturned 返回的数据条数
+     * @param costNanos    耗时（纳秒）
+     */
+    public static void recordQuery(Class<?> cacheClass, int rowsScanned, int rowsReturned, long costNanos) {
+        if (!enabled) {
+            return;
+        }
+        getCacheStats(cacheClass).recordQuery(rowsScanned, rowsReturned, costNanos);
+        for (MetricsListener listener : LISTENERS) {
+            try {
+                listener.onQuery(cacheClass.getName(), rowsScanned, rowsReturned, costNanos);
+            } catch (Exception e) {
+                log.error("指标监听器执行失败", e);
+            }
+        }
+    }
+
+    /**
+     * 记录一次DataEngine查询结果缓存的命中情况
+     *
+     * @param cacheClass 缓存class
+     * @param hit        是否命中
+     */
+    public static void recordMemo(Class<?> cacheClass, boolean hit) {
+        if (!enabled) {
+            return;
+        }
+        getCacheStats(cacheClass).recordMemo(hit);
+    }
+
+    /**
+     * 记录一次缓存刷新
+     *
+     * @param cacheClass 缓存class
+     * @param full       是否全量刷新
+     * @param keyCount   增量刷新的主键数
+     * @param costMillis 耗时（毫秒）
+     */
+    public static void recordRefresh(Class<?> cacheClass, boolean full, int keyCount, long costMillis) {
+        if (!enabled) {
+            return;
+        }
+        getCacheStats(cacheClass).recordRefresh(full, costMillis);
+        for (MetricsListener listener : LISTENERS) {
+            try {
+                listener.onRefresh(cacheClass.getName(), full, keyCount, costMillis);
+            } catch (Exception e) {
+                log.error("指标监听器执行失败", e);
+            }
+        }
+    }
+
+    /**
+     * 记录一次Dao查询
+     *
+     * @param daoClass  Dao实现类
+     * @param fromCache 是否从缓存查询
+     */
+    public static void recordDaoRead(Class<?> daoClass, boolean fromCache) {
+        if (!enabled) {
+            return;
+        }
+        getDaoStats(daoClass).recordRead(fromCache);
+        for (MetricsListener listener : LISTENERS) {
+            try {
+                listener.onDaoRead(daoClass.getName(), fromCache);
+            } catch (Exception e) {
+                log.error("指标监听器执行失败", e);
+            }
+        }
+    }
+
+    /**
+     * 获取缓存的指标
+     */
+    public static CacheStats getCacheStats(Class<?> cacheClass) {
+        CacheStats stats = CACHE_STATS.get(cacheClass.getName());
+        if (stats == null) {
+            stats = new CacheStats(cacheClass);
+            CacheStats old = CACHE_STATS.putIfAbsent(cacheClass.getName(), stats);
+            if (old != null) {
+                return old;
+            }
+            register("Cache", cacheClass.getName(), stats);
+        }
+        return stats;
+    }
+
+    /**
+     * 获取Dao的指标
+     */
+    public static DaoStats getDaoStats(Class<?> daoClass) {
+        DaoStats stats = DAO_STATS.get(daoClass.getName());
+        if (stats == null) {
+            stats = new DaoStats();
+            DaoStats old = DAO_STATS.putIfAbsent(daoClass.getName(), stats);
+            if (old != null) {
+                return old;
+            }
+            register("Dao", daoClass.getName(), stats);
+        }
+        return stats;
+    }
+
+    /**
+     * 获取所有缓存的指标，key为缓存类名
+     */
+    public static Map<String, CacheStats> getAllCacheStats() {
+        return Collections.unmodifiableMap(CACHE_STATS);
+    }
+
+    /**
+     * 获取所有Dao的指标，key为Dao类名
+     */
+    public static Map<String, DaoStats> getAllDaoStats() {
+        return Collections.unmodifiableMap(DAO_STATS);
+    }
+
+    private static void register(String type, String name, Object mbean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(mbean, objectName);
+            }
+        } catch (Exception e) {
+            log.warn("注册JMX指标失败：" + name, e);
+        }
+    }
+}
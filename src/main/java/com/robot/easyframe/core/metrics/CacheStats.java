@@ -0,0 +1,182 @@
+package com.robot.easyframe.core.metrics;
+
+import com.robot.easyframe.core.cache.BaseCache;
+import com.robot.easyframe.core.cache.CacheSnapshot;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个缓存的指标
+ *
+ * @author luozhan
+ * @date 2020-03
+ * @see CacheMetrics
+ */
+public class CacheStats implements CacheStatsMBean {
+    /**
+     * 查询耗时区间的上限（纳秒）
+     */
+    private static final long[] LATENCY_BOUNDS = {100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L};
+    private static final String[] LATENCY_NAMES = {"<100us", "<1ms", "<10ms", "<100ms", "<1s", ">=1s"};
+
+    private final Class<?> cacheClass;
+
+    private final LongAdder queryCount = new LongAdder();
+    private final LongAdder rowsScanned = new LongAdder();
+    private final LongAdder rowsReturned = new LongAdder();
+    private final LongAdder queryNanos = new LongAdder();
+    private final LongAdder[] latencyHistogram = new LongAdder[LATENCY_NAMES.length];
+
+    private final LongAdder memoHits = new LongAdder();
+    private final LongAdder memoMisses = new LongAdder();
+
+    private final LongAdder refreshCount = new LongAdder();
+    private final LongAdder fullRefreshCount = new LongAdder();
+    private final LongAdder refreshMillis = new LongAdder();
+    private volatile long lastRefreshMillis = 0;
+
+    CacheStats(Class<?> cacheClass) {
+        this.cacheClass = cacheClass;
+        for (int i = 0; i < latencyHistogram.length; i++) {
+            latencyHistogram[i] = new LongAdder();
+        }
+    }
+
+    void recordQuery(int scanned, int returned, long costNanos) {
+        queryCount.increment();
+        rowsScanned.add(scanned);
+        rowsReturned.add(returned);
+        queryNanos.add(costNanos);
+        int bucket = 0;
+        while (bucket < LATENCY_BOUNDS.length && costNanos >= LATENCY_BOUNDS[bucket]) {
+            bucket++;
+        }
+        latencyHistogram[bucket].increment();
+    }
+
+    void recordMemo(boolean hit) {
+        if (hit) {
+            memoHits.increment();
+        } else {
+            memoMisses.increment();
+        }
+    }
+
+    void recordRefresh(boolean full, long costMillis) {
+        refreshCount.increment();
+        if (full) {
+            fullRefreshCount.increment();
+        }
+        refreshMillis.add(costMillis);
+        lastRefreshMillis = costMillis;
+    }
+
+    @Override
+    public long getQueryCount() {
+        return queryCount.sum();
+    }
+
+    @Override
+    public long getRowsScanned() {
+        return rowsScanned.sum();
+    }
+
+    @Override
+    public long getRowsReturned() {
+        return rowsReturned.sum();
+    }
+
+    @Override
+    public double getAvgQueryMicros() {
+        long count = queryCount.sum();
+        return count == 0 ? 0 : queryNanos.sum() / 1000.0 / count;
+    }
+
+    @Override
+    public Map<String, Long> getQueryLatencyHistogram() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < LATENCY_NAMES.length; i++) {
+            result.put(LATENCY_NAMES[i], latencyHistogram[i].sum());
+        }
+        return result;
+    }
+
+    @Override
+    public long getMemoHits() {
+        return memoHits.sum();
+    }
+
+    @Override
+    public long getMemoMisses() {
+        return memoMisses.sum();
+    }
+
+    @Override
+    public double getMemoHitRate() {
+        long hits = memoHits.sum(), total = hits + memoMisses.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public long getRefreshCount() {
+        return refreshCount.sum();
+    }
+
+    @Override
+    public long getFullRefreshCount() {
+        return fullRefreshCount.sum();
+    }
+
+    @Override
+    public double getAvgRefreshMillis() {
+        long count = refreshCount.sum();
+        return count == 0 ? 0 : (double) refreshMillis.sum() / count;
+    }
+
+    @Override
+    public long getLastRefreshMillis() {
+        return lastRefreshMillis;
+    }
+
+    @Override
+    public int getRowCount() {
+        CacheSnapshot<?> snapshot = getSnapshot();
+        return snapshot == null ? -1 : snapshot.size();
+    }
+
+    @Override
+    public long getEstimatedBytes() {
+        CacheSnapshot<?> snapshot = getSnapshot();
+        return snapshot == null ? -1 : snapshot.estimateSize();
+    }
+
+    @Override
+    public long getSnapshotVersion() {
+        CacheSnapshot<?> snapshot = getSnapshot();
+        return snapshot == null ? -1 : snapshot.getVersion();
+    }
+
+    @Override
+    public void reset() {
+        queryCount.reset();
+        rowsScanned.reset();
+        rowsReturned.reset();
+        queryNanos.reset();
+        for (LongAdder adder : latencyHistogram) {
+            adder.reset();
+        }
+        memoHits.reset();
+        memoMisses.reset();
+        refreshCount.reset();
+        fullRefreshCount.reset();
+        refreshMillis.reset();
+        lastRefreshMillis = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheSnapshot<?> getSnapshot() {
+        return BaseCache.class.isAssignableFrom(cacheClass) ? BaseCache.peekSnapshot((Class<? extends BaseCache>) cacheClass) : null;
+    }
+}
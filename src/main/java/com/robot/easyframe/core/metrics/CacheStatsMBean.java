@@ -0,0 +1,91 @@
+package com.robot.easyframe.core.metrics;
+
+import java.util.Map;
+
+/**
+ * 缓存指标（JMX）
+ *
+ * @author luozhan
+ * @date 2020-03
+ */
+public interface CacheStatsMBean {
+    /**
+     * 查询次数
+     */
+    long getQueryCount();
+
+    /**
+     * 逐条判断过的数据条数（累计）
+     */
+    long getRowsScanned();
+
+    /**
+     * 返回的数据条数（累计）
+     */
+    long getRowsReturned();
+
+    /**
+     * 平均查询耗时（微秒）
+     */
+    double getAvgQueryMicros();
+
+    /**
+     * 查询耗时分布，key为耗时区间，value为次数
+     */
+    Map<String, Long> getQueryLatencyHistogram();
+
+    /**
+     * 查询结果缓存命中次数
+     */
+    long getMemoHits();
+
+    /**
+     * 查询结果缓存未命中次数
+     */
+    long getMemoMisses();
+
+    /**
+     * 查询结果缓存命中率
+     */
+    double getMemoHitRate();
+
+    /**
+     * 刷新次数（全量 + 增量）
+     */
+    long getRefreshCount();
+
+    /**
+     * 全量刷新次数
+     */
+    long getFullRefreshCount();
+
+    /**
+     * 平均刷新耗时（毫秒）
+     */
+    double getAvgRefreshMillis();
+
+    /**
+     * 最近一次刷新耗时（毫秒）
+     */
+    long getLastRefreshMillis();
+
+    /**
+     * 当前数据条数，未加载时为-1
+     */
+    int getRowCount();
+
+    /**
+     * 估算的内存占用（字节），未加载时为-1
+     */
+    long getEstimatedBytes();
+
+    /**
+     * 当前快照版本，未加载时为-1
+     */
+    long getSnapshotVersion();
+
+    /**
+     * 清空累计的指标
+     */
+    void reset();
+}
@@ -0,0 +1,48 @@
+package com.robot.easyframe.core.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个Dao的查询指标
+ *
+ * @author luozhan
+ * @date 2020-03
+ * @see CacheMetrics
+ */
+public class DaoStats implements DaoStatsMBean {
+    private final LongAdder cacheReads = new LongAdder();
+    private final LongAdder dbReads = new LongAdder();
+
+    DaoStats() {
+    }
+
+    void recordRead(boolean fromCache) {
+        if (fromCache) {
+            cacheReads.increment();
+        } else {
+            dbReads.increment();
+        }
+    }
+
+    @Override
+    public long getCacheReads() {
+        return cacheReads.sum();
+    }
+
+    @Override
+    public long getDbReads() {
+        return dbReads.sum();
+    }
+
+    @Override
+    public double getCacheReadRatio() {
+        long cache = cacheReads.sum(), total = cache + dbReads.sum();
+        return total == 0 ? 0 : (double) cache / total;
+    }
+
+    @Override
+    public void reset() {
+        cacheReads.reset();
+        dbReads.reset();
+    }
+}
@@ -0,0 +1,29 @@
+package com.robot.easyframe.core.metrics;
+
+/**
+ * Dao查询指标（JMX）
+ *
+ * @author luozhan
+ * @date 2020-03
+ */
+public interface DaoStatsMBean {
+    /**
+     * 从缓存查询的次数
+     */
+    long getCacheReads();
+
+    /**
+     * 从数据库查询的次数
+     */
+    long getDbReads();
+
+    /**
+     * 从缓存查询的比例
+     */
+    double getCacheReadRatio();
+
+    /**
+     * 清空累计的指标
+     */
+    void reset();
+}
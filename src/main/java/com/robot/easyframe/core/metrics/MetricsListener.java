@@ -0,0 +1,42 @@
+package com.robot.easyframe.core.metrics;
+
+/**
+ * 指标监听器
+ * 用于将缓存和Dao的指标对接到项目自己的监控系统（如Prometheus），通过{@link CacheMetrics#addListener(MetricsListener)}注册
+ * 回调在业务线程中同步执行，实现类应尽量轻量，不要抛出异常
+ *
+ * @author luozhan
+ * @date 2020-03
+ */
+public interface MetricsListener {
+    /**
+     * 缓存查询完成
+     *
+     * @param cacheId      缓存id（缓存类名）
+     * @param rowsScanned  逐条判断过的数据条数
+     * @param rowsReturned 返回的数据条数
+     * @param costNanos    耗时（纳秒）
+     */
+    default void onQuery(String cacheId, int rowsScanned, int rowsReturned, long costNanos) {
+    }
+
+    /**
+     * 缓存刷新完成
+     *
+     * @param cacheId    缓存id（缓存类名）
+     * @param full       是否全量刷新
+     * @param keyCount   增量刷新的主键数，全量刷新时为0
+     * @param costMillis 耗时（毫秒）
+     */
+    default void onRefresh(String cacheId, boolean full, int keyCount, long costMillis) {
+    }
+
+    /**
+     * Dao查询（getBy）
+     *
+     * @param daoName   Dao实现类名
+     * @param fromCache 是否从缓存查询
+     */
+    default void onDaoRead(String daoName, boolean fromCache) {
+    }
+}
@@ -0,0 +1,55 @@
+package com.robot.easyframe.util;
+
+import com.ai.appframe2.common.DataContainerInterface;
+import com.robot.easyframe.core.engine.DaoEngine;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按bo查询数据库的翻译数据提供者：select 编码, 名称 from bo where 编码 in (...)
+ *
+ * @author luozhan
+ * @date 2020-03
+ */
+public class BoTranslateProvider implements TranslateProvider {
+    private final Class<? extends DataContainerInterface> boClass;
+    private final String codeField;
+    private final String nameField;
+
+    /**
+     * @param boClass   字典bo
+     * @param codeField 字典编码属性
+     * @param nameField 字典名称属性
+     */
+    public BoTranslateProvider(Class<? extends DataContainerInterface> boClass, String codeField, String nameField) {
+        this.boClass = boClass;
+        this.codeField = codeField;
+        this.nameField = nameField;
+    }
+
+    @Override
+    public Map<String, String> getNames(Collection<String> codes) throws Exception {
+        if (codes.isEmpty()) {
+            return new HashMap<>(0);
+        }
+        // 每个编码单独绑定参数，编码中含有","时也不会被拆开
+        StringBuilder conditionSql = new StringBuilder(codeField).append(" in (");
+        Map<String, String> parameter = new HashMap<>(codes.size() * 4 / 3 + 1);
+        for (String code : codes) {
+            String paramName = "CODE_" + parameter.size();
+            conditionSql.append(parameter.isEmpty() ? ":" : ",:").append(paramName);
+            parameter.put(paramName, code);
+        }
+        conditionSql.append(")");
+        DataContainerInterface[] beans = DaoEngine.getBeans(boClass, conditionSql.toString(), parameter);
+        Map<String, String> names = new HashMap<>(beans.length * 4 / 3 + 1);
+        for (DataContainerInterface bean : beans) {
+            // 编码相同时取第一条
+            Object name = bean.get(nameField);
+            names.putIfAbsent(String.valueOf(bean.get(codeField)), name == null ? "" : String.valueOf(name));
+        }
+        return names;
+    }
+}
@@ -7,6 +7,7 @@ import com.robot.easyframe.model.OperateDTO;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.reflect.Array;
+import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -90,6 +91,72 @@ public class Convert {
         }
     }
 
+    /**
+     * 日期或日期字符串（"yyyy-MM-dd HH:mm:ss"） → 毫秒数
+     * 注：传入null或无法转换时返回null
+     *
+     * @param value Date/Timestamp或日期字符串
+     * @return 毫秒数
+     */
+    public static Long toMillis(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(value.toString()).getTime();
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 数字或数字字符串 → Long
+     * 注：传入null或无法转换时返回null
+     *
+     * @param value 数字或数字字符串
+     * @return Long
+     */
+    public static Long toLong(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        try {
+            return Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 数字或数字字符串 → BigDecimal（不会截断小数）
+     * 注：传入null或无法转换时返回null
+     *
+     * @param value 数字或数字字符串
+     * @return BigDecimal
+     */
+    public static BigDecimal toDecimal(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+        try {
+            return new BigDecimal(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     //---------------------------------- BO/DataContainer相关转换 ---------------------------------------//
 
     /**
@@ -0,0 +1,103 @@
+package com.robot.easyframe.util;
+
+import com.ai.appframe2.common.DataContainerInterface;
+import com.ai.appframe2.common.DataStructInterface;
+import com.robot.easyframe.core.cache.CacheSnapshot;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * 翻译字典：字典数据源转换成的 编码 -> 名称 哈希表
+ * 同时记录生成字典时使用的数据源对象（弱引用），数据源对象变化（缓存刷新、重新查询等）时需要重新生成
+ *
+ * @author luozhan
+ * @date 2020-03
+ * @see TranslateUtil
+ */
+final class TranslateDict {
+    private final Map<String, String> names;
+
+    private final WeakReference<?>[] sources;
+
+    private TranslateDict(Map<String, String> names, Object[] sources) {
+        this.names = names;
+        this.sources = new WeakReference<?>[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            this.sources[i] = new WeakReference<>(sources[i]);
+        }
+    }
+
+    /**
+     * 字典数组转换成翻译字典，编码相同时取第一条
+     *
+     * @param dict      字典数据源
+     * @param codeField 字典的code
+     * @param nameField 字典的name
+     * @param sources   生成字典使用的数据源对象
+     */
+    static TranslateDict of(DataStructInterface[] dict, String codeField, String nameField, Object... sources) {
+        Map<String, String> names = new HashMap<>(dict.length * 4 / 3 + 1);
+        for (DataStructInterface bean : dict) {
+            put(names, bean.get(codeField), bean.get(nameField));
+        }
+        return new TranslateDict(names, sources);
+    }
+
+    /**
+     * 编码 -> 名称的map转换成翻译字典（不关联数据源）
+     */
+    static TranslateDict of(Map<String, String> names) {
+        return new TranslateDict(names, new Object[0]);
+    }
+
+    /**
+     * 缓存快照转换成翻译字典，列式存储时不会生成bean
+     * 快照不可变，快照对象本身即代表数据版本
+     */
+    static TranslateDict of(CacheSnapshot<?> snapshot, String codeField, String nameField) {
+        int size = snapshot.size();
+        Map<String, String> names = new HashMap<>(size * 4 / 3 + 1);
+        IntFunction<DataContainerInterface> reader = snapshot.newReader();
+        for (int i = 0; i < size; i++) {
+            DataContainerInterface bean = reader.apply(i);
+            put(names, bean.get(codeField), bean.get(nameField));
+        }
+        return new TranslateDict(names, new Object[]{snapshot});
+    }
+
+    private static void put(Map<String, String> names, Object code, Object name) {
+        names.putIfAbsent(String.valueOf(code), name == null ? "" : String.valueOf(name));
+    }
+
+    /**
+     * 是否由这些数据源对象生成
+     */
+    boolean isBuiltFrom(Object... sources) {
+        if (sources.length != this.sources.length) {
+            return false;
+        }
+        for (int i = 0; i < sources.length; i++) {
+            if (this.sources[i].get() != sources[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 翻译，字典中没找到的话返回原始值
+     */
+    String translate(String originValue) {
+        if (originValue == null || originValue.isEmpty()) {
+            return originValue;
+        }
+        return names.getOrDefault(originValue, originValue);
+    }
+
+    int size() {
+        return names.size();
+    }
+}
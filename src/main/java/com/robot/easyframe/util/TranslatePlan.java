@@ -0,0 +1,358 @@
+package com.robot.easyframe.util;
+
+import com.ai.appframe2.bo.DataContainer;
+import com.ai.appframe2.common.DataStructInterface;
+import com.ai.appframe2.complex.cache.CacheFactory;
+import com.ai.common.bo.BOBsStaticDataBean;
+import com.ai.common.util.StaticDataUtil;
+import com.ai.secframe.orgmodel.bo.BOSecOrganizeBean;
+import com.ai.secframe.orgmodel.bo.QBOSecOrgStaffOperBean;
+import com.robot.easyframe.annotation.DicType;
+import com.robot.easyframe.annotation.Dictionary;
+import com.robot.easyframe.annotation.Translate;
+import com.robot.easyframe.core.cache.BaseCache;
+import com.robot.easyframe.core.cache.CacheSnapshot;
+import com.robot.easyframe.core.dao.BaseDao;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static com.robot.easyframe.util.LambdaExceptionUtil.wrapFunction;
+
+/**
+ * 翻译计划：一组bo class中所有需要翻译的属性及其翻译配置
+ * 反射、读取注解、属性名转换只在生成计划时执行一次，字典在每次翻译时按数据源获取（数据源不变时复用已生成的字典）
+ *
+ * @author luozhan
+ * @date 2020-03
+ * @see TranslateUtil
+ */
+final class TranslatePlan {
+    private static Log log = LogFactory.getLog(TranslatePlan.class);
+
+    /**
+     * 翻译字典缓存，key为字典数据源（类型 + 数据源 + 编码属性 + 名称属性），数据源对象变化时重新生成
+     */
+    private static final Map<String, TranslateDict> DICT_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * DAO、员工、组织及自定义翻译已查询到的名称缓存，结构：字典数据源key -> (编码 -> 名称)
+     */
+    private static final Map<String, Map<String, CachedName>> NAME_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * 按编码批量查询时每次的最大编码个数（oracle的in最多1000个）
+     */
+    private static final int MAX_IN_SIZE = 1000;
+
+    /**
+     * 单个数据源缓存的名称超过该数量时清理过期的名称，仍超过时全部清空
+     */
+    private static final int MAX_CACHED_NAMES = 10000;
+
+    /**
+     * 员工、组织翻译的数据提供者
+     */
+    private static final Map<DicType, TranslateProvider> PROVIDERS = new ConcurrentHashMap<>();
+
+    /**
+     * 自定义翻译的数据提供者实例
+     */
+    private static final Map<Class<?>, TranslateProvider> CUSTOM_PROVIDERS = new ConcurrentHashMap<>();
+
+    static {
+        PROVIDERS.put(DicType.OP, new BoTranslateProvider(QBOSecOrgStaffOperBean.class, QBOSecOrgStaffOperBean.S_StaffId, QBOSecOrgStaffOperBean.S_StaffName));
+        PROVIDERS.put(DicType.ORG, new BoTranslateProvider(BOSecOrganizeBean.class, BOSecOrganizeBean.S_OrganizeId, BOSecOrganizeBean.S_OrganizeName));
+    }
+
+    private final List<Item> items;
+
+    private TranslatePlan(List<Item> items) {
+        this.items = items;
+    }
+
+    /**
+     * 生成翻译计划
+     *
+     * @param classes 待翻译的bo class
+     */
+    static TranslatePlan of(Class<?>[] classes) {
+        List<Item> items = new ArrayList<>();
+        Set<String> fieldNames = new HashSet<>();
+        // 获取bo中需要翻译的属性
+        for (Class<?> clazz : classes) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (!field.isAnnotationPresent(Translate.class)) {
+                    continue;
+                }
+                String fieldName = TranslateUtil.getRealFieldName(field.getName());
+                if (!fieldNames.add(fieldName)) {
+                    // 不同的bo可能有相同的属性，跳过
+                    continue;
+                }
+                items.add(new Item(fieldName, field.getAnnotation(Translate.class)));
+            }
+        }
+        if (items.size() == 0) {
+            log.warn(String.format("找不到需要翻译的属性，请检查Bean:%s的配置，如果需要翻译，请在Bean中使用@Translate注解，如果只要转成List不需要翻译，可使用PartTool.toList()", Arrays.toString(classes)));
+        }
+        return new TranslatePlan(Collections.unmodifiableList(items));
+    }
+
+    List<Item> getItems() {
+        return items;
+    }
+
+    /**
+     * 单个属性的翻译配置
+     */
+    static final class Item {
+        /**
+         * 待翻译的属性名
+         */
+        final String fieldName;
+        /**
+         * 翻译后的属性名
+         */
+        final String translateName;
+        final Translate config;
+        /**
+         * 字典数据源class
+         */
+        final Class<?> srcClass;
+        /**
+         * 字典编码属性，字典名称属性
+         */
+        final String code;
+        final String name;
+
+        private Item(String fieldName, Translate config) {
+            this.fieldName = fieldName;
+            this.translateName = TranslateUtil.getTranslateName(fieldName);
+            this.config = config;
+            this.srcClass = config.src();
+            switch (config.type()) {
+                case STATIC:
+                    code = BOBsStaticDataBean.S_CodeValue;
+                    name = BOBsStaticDataBean.S_CodeName;
+                    break;
+                case OP:
+                    code = QBOSecOrgStaffOperBean.S_StaffId;
+                    name = QBOSecOrgStaffOperBean.S_StaffName;
+                    break;
+                case ORG:
+                    code = BOSecOrganizeBean.S_OrganizeId;
+                    name = BOSecOrganizeBean.S_OrganizeName;
+                    break;
+                default:
+                    // 获取字典数据源配置信息
+                    Dictionary dictionaryConfig = srcClass.getAnnotation(Dictionary.class);
+                    code = StringUtils.isEmpty(config.dicKey()) && dictionaryConfig != null ? dictionaryConfig.key() : config.dicKey();
+                    name = StringUtils.isEmpty(config.dicValue()) && dictionaryConfig != null ? dictionaryConfig.value() : config.dicValue();
+            }
+        }
+
+        /**
+         * 获取当前的翻译字典
+         *
+         * @param origins 待翻译数据，DAO翻译时只查询其中出现的编码
+         * @return 翻译字典，没有字典数据源时返回null（显示原值）
+         */
+        TranslateDict resolveDict(DataContainer[] origins) {
+            try {
+                switch (config.type()) {
+                    case STATIC: {
+                        // 静态字典的key
+                        String[] staticKeys = config.staticKey();
+                        Object[][] staticData = Stream.of(staticKeys).map(wrapFunction(StaticDataUtil::getStaticData)).toArray(Object[][]::new);
+                        // 合并多个字典
+                        return getDict("STATIC:" + Arrays.toString(staticKeys), staticData, () -> TranslateDict.of(
+                                Stream.of(staticData).flatMap(Stream::of).toArray(DataStructInterface[]::new), code, name, (Object[]) staticData));
+                    }
+                    case CACHE: {
+                        String sourceKey = "CACHE:" + srcClass.getName() + ":" + code + ":" + name;
+                        if (BaseCache.class.isAssignableFrom(srcClass)) {
+                            // BaseCache的子类通过快照获取（包含增量数据，兼容列式存储），快照不变时直接使用已生成的字典
+                            CacheSnapshot<?> snapshot = BaseCache.getSnapshot(srcClass.asSubclass(BaseCache.class));
+                            return getDict(sourceKey, new Object[]{snapshot}, () -> TranslateDict.of(snapshot, code, name));
+                        }
+                        DataStructInterface[] data = (DataStructInterface[]) CacheFactory.get(srcClass, srcClass);
+                        return getDict(sourceKey, new Object[]{data}, () -> TranslateDict.of(data, code, name, (Object) data));
+                    }
+                    case DAO: {
+                        BaseDao dao = (BaseDao) ServiceUtil.get(srcClass);
+                        return resolveByCodes(origins, "DAO:" + srcClass.getName() + ":" + code + ":" + name, config.cacheSeconds(),
+                                codes -> {
+                                    Map<String, String> found = new HashMap<>(codes.size() * 4 / 3 + 1);
+                                    String[] values = codes.toArray(new String[0]);
+                                    if (values.length == 1) {
+                                        // getByField只传一个值时会按逗号拆分，重复传入避免编码中的逗号被拆分（查询时会去重）
+                                        values = new String[]{values[0], values[0]};
+                                    }
+                                    for (DataStructInterface bean : dao.getByField(code, values)) {
+                                        // 编码相同时取第一条
+                                        Object value = bean.get(name);
+                                        found.putIfAbsent(String.valueOf(bean.get(code)), value == null ? "" : String.valueOf(value));
+                                    }
+                                    return found;
+                                });
+                    }
+                    case OP:
+                    case ORG:
+                    case CUSTOM: {
+                        TranslateProvider provider = getProvider(config);
+                        if (provider == null) {
+                            return null;
+                        }
+                        // 按提供者区分缓存，注册新的提供者后不会使用旧的缓存
+                        String sourceKey = getSourceKey(provider);
+                        int cacheSeconds = config.cacheSeconds() > 0 ? config.cacheSeconds() : provider.cacheSeconds();
+                        return resolveByCodes(origins, sourceKey, cacheSeconds, provider::getNames);
+                    }
+                    default:
+                        return null;
+                }
+            } catch (Exception e) {
+                log.error("字典数据源获取失败：" + e);
+                return TranslateDict.of(new DataContainer[0], code, name);
+            }
+        }
+
+        /**
+         * 按编码批量翻译：收集待翻译数据中不重复的编码，每1000个查询一次，
+         * 配置了缓存时间时，缓存中未过期的编码不再查询（查不到的编码也会缓存，避免重复查询）
+         *
+         * @param origins      待翻译数据
+         * @param sourceKey    字典数据源的key
+         * @param cacheSeconds 缓存时间（秒），0表示不缓存
+         * @param loader       按编码查询名称的方法，返回 编码 -> 名称
+         */
+        private TranslateDict resolveByCodes(DataContainer[] origins, String sourceKey, int cacheSeconds, NameLoader loader) throws Exception {
+            Set<String> codes = new LinkedHashSet<>();
+            for (DataContainer origin : origins) {
+                Object value = origin.get(fieldName);
+                if (value != null && !"".equals(value.toString())) {
+                    codes.add(value.toString());
+                }
+            }
+            Map<String, String> names = new HashMap<>(codes.size() * 4 / 3 + 1);
+            Map<String, CachedName> cachedNames = cacheSeconds > 0 ?
+                    NAME_CACHE.computeIfAbsent(sourceKey, key -> new ConcurrentHashMap<>()) : null;
+            long now = System.currentTimeMillis();
+            List<String> missingCodes = new ArrayList<>();
+            for (String value : codes) {
+                CachedName cached = cachedNames == null ? null : cachedNames.get(value);
+                if (cached == null || cached.expireTime <= now) {
+                    missingCodes.add(value);
+                } else if (cached.name != null) {
+                    names.put(value, cached.name);
+                }
+            }
+            if (missingCodes.isEmpty()) {
+                return TranslateDict.of(names);
+            }
+            for (int from = 0; from < missingCodes.size(); from += MAX_IN_SIZE) {
+                List<String> chunk = missingCodes.subList(from, Math.min(from + MAX_IN_SIZE, missingCodes.size()));
+                Map<String, String> found = loader.load(chunk);
+                for (String value : chunk) {
+                    String result = found.get(value);
+                    if (result != null) {
+                        names.put(value, result);
+                    }
+                    if (cachedNames != null) {
+                        cachedNames.put(value, new CachedName(result, now + cacheSeconds * 1000L));
+                    }
+                }
+            }
+            if (cachedNames != null && cachedNames.size() > MAX_CACHED_NAMES) {
+                cachedNames.values().removeIf(cached -> cached.expireTime <= now);
+                if (cachedNames.size() > MAX_CACHED_NAMES) {
+                    cachedNames.clear();
+                }
+            }
+            return TranslateDict.of(names);
+        }
+    }
+
+    /**
+     * 注册员工、组织翻译的数据提供者
+     */
+    static void registerProvider(DicType type, TranslateProvider provider) {
+        if (type != DicType.OP && type != DicType.ORG) {
+            throw new RuntimeException("只能注册员工、组织翻译的数据提供者，自定义翻译请使用@Translate(provider = ...)：" + type);
+        }
+        TranslateProvider old = PROVIDERS.put(type, provider);
+        if (old != null && old != provider) {
+            // 旧提供者的缓存不会再使用
+            NAME_CACHE.remove(getSourceKey(old));
+        }
+    }
+
+    private static String getSourceKey(TranslateProvider provider) {
+        return "PROVIDER:" + provider.getClass().getName() + "@" + System.identityHashCode(provider);
+    }
+
+    private static TranslateProvider getProvider(Translate config) {
+        if (config.type() != DicType.CUSTOM) {
+            return PROVIDERS.get(config.type());
+        }
+        Class<? extends TranslateProvider> providerClass = config.provider();
+        if (providerClass == TranslateProvider.class) {
+            throw new RuntimeException("自定义翻译需要指定翻译数据提供者：@Translate(provider = ...)");
+        }
+        return CUSTOM_PROVIDERS.computeIfAbsent(providerClass, key -> {
+            try {
+                return providerClass.newInstance();
+            } catch (Exception e) {
+                throw new RuntimeException("翻译数据提供者实例化失败：" + providerClass.getName(), e);
+            }
+        });
+    }
+
+    /**
+     * 按编码查询名称
+     */
+    @FunctionalInterface
+    private interface NameLoader {
+        Map<String, String> load(List<String> codes) throws Exception;
+    }
+
+    /**
+     * 按编码批量翻译时缓存的名称
+     */
+    private static final class CachedName {
+        /**
+         * 名称，null表示查不到该编码
+         */
+        private final String name;
+        private final long expireTime;
+
+        private CachedName(String name, long expireTime) {
+            this.name = name;
+            this.expireTime = expireTime;
+        }
+    }
+
+    /**
+     * 获取翻译字典，数据源对象与生成字典时相同则直接使用，否则重新生成
+     *
+     * @param sourceKey 字典数据源的key
+     * @param sources   当前的数据源对象
+     * @param builder   生成字典的方法
+     * @return 翻译字典
+     */
+    private static TranslateDict getDict(String sourceKey, Object[] sources, Supplier<TranslateDict> builder) {
+        TranslateDict dict = DICT_CACHE.get(sourceKey);
+        if (dict == null || !dict.isBuiltFrom(sources)) {
+            dict = builder.get();
+            DICT_CACHE.put(sourceKey, dict);
+        }
+        return dict;
+    }
+}
@@ -0,0 +1,35 @@
+package com.robot.easyframe.util;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 翻译数据提供者，用于员工、组织等不适合整表加载的字典
+ * <p>
+ * 翻译时收集待翻译数据中不重复的编码，每1000个调用一次{@link #getNames(Collection)}，
+ * 查询结果按{@link #cacheSeconds()}缓存（同一提供者共用，有数量上限），10000条数据的翻译通常只需要一次查询
+ * <p>
+ * 使用方式：
+ * 1.员工、组织翻译（DicType.OP/ORG）默认按{@link BoTranslateProvider}查询，可通过{@link TranslateUtil#registerProvider}替换成项目实际的实现
+ * 2.自定义翻译：@Translate(type = DicType.CUSTOM, provider = XxxProvider.class)，实现类需要有无参构造方法
+ *
+ * @author luozhan
+ * @date 2020-03
+ */
+public interface TranslateProvider {
+    /**
+     * 批量查询编码对应的名称
+     *
+     * @param codes 不重复的编码，最多1000个
+     * @return 编码 -> 名称，查不到的编码不放入结果
+     * @throws Exception 查询失败时该字段显示原值
+     */
+    Map<String, String> getNames(Collection<String> codes) throws Exception;
+
+    /**
+     * 查询结果的缓存时间（秒），0表示不缓存；@Translate中配置了cacheSeconds时以注解为准
+     */
+    default int cacheSeconds() {
+        return 300;
+    }
+}
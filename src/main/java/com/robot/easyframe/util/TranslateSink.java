@@ -0,0 +1,47 @@
+package com.robot.easyframe.util;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 翻译结果的输出目标，用于{@link TranslateUtil#write}逐行输出翻译结果，不生成中间的Map
+ * <p>
+ * 每行依次调用 startRow() -> field()... -> endRow()，属性顺序同{@link TranslateUtil#bean2Map}：先原属性，再翻译后的属性
+ * 常用实现见{@link TranslateSinks}，也可以直接实现本接口作为回调
+ *
+ * @author luozhan
+ * @date 2020-03
+ */
+public interface TranslateSink {
+    /**
+     * 开始输出
+     *
+     * @param columns 可能输出的全部属性名（原属性 + 翻译后的属性），每行只输出有值的属性
+     */
+    default void start(List<String> columns) throws IOException {
+    }
+
+    /**
+     * 开始一行
+     */
+    void startRow() throws IOException;
+
+    /**
+     * 输出一个属性
+     *
+     * @param name  属性名
+     * @param value 属性值（已转换成字符串），可能为null
+     */
+    void field(String name, String value) throws IOException;
+
+    /**
+     * 结束一行
+     */
+    void endRow() throws IOException;
+
+    /**
+     * 结束输出（不会关闭底层的Writer）
+     */
+    default void end() throws IOException {
+    }
+}
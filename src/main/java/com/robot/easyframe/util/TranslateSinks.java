@@ -0,0 +1,206 @@
+package com.robot.easyframe.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 常用的翻译结果输出目标
+ *
+ * @author luozhan
+ * @date 2020-03
+ * @see TranslateUtil#write
+ */
+public final class TranslateSinks {
+
+    private TranslateSinks() {
+    }
+
+    /**
+     * 输出成JSON数组，如：[{"RES_STATE":"1","RES_STATE_NAME":"空闲"},...]
+     *
+     * @param writer 输出目标，建议使用带缓冲的Writer
+     */
+    public static TranslateSink json(Writer writer) {
+        return new JsonSink(writer);
+    }
+
+    /**
+     * 输出成CSV（RFC 4180），第一行为表头
+     *
+     * @param writer  输出目标，建议使用带缓冲的Writer
+     * @param columns 输出的列，不传时输出待翻译数据的所有属性及翻译后的属性
+     */
+    public static TranslateSink csv(Writer writer, String... columns) {
+        return new CsvSink(writer, columns);
+    }
+
+    private static class JsonSink implements TranslateSink {
+        private final Writer writer;
+        private boolean firstRow = true;
+        private boolean firstField;
+
+        private JsonSink(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void start(List<String> columns) throws IOException {
+            writer.write('[');
+        }
+
+        @Override
+        public void startRow() throws IOException {
+            if (!firstRow) {
+                writer.write(',');
+            }
+            firstRow = false;
+            firstField = true;
+            writer.write('{');
+        }
+
+        @Override
+        public void field(String name, String value) throws IOException {
+            if (!firstField) {
+                writer.write(',');
+            }
+            firstField = false;
+            writeString(name);
+            writer.write(':');
+            if (value == null) {
+                writer.write("null");
+            } else {
+                writeString(value);
+            }
+        }
+
+        @Override
+        public void endRow() throws IOException {
+            writer.write('}');
+        }
+
+        @Override
+        public void end() throws IOException {
+            writer.write(']');
+            writer.flush();
+        }
+
+        private void writeString(String value) throws IOException {
+            writer.write('"');
+            int from = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                String escaped;
+                switch (c) {
+                    case '"':
+                        escaped = "\\\"";
+                        break;
+                    case '\\':
+                        escaped = "\\\\";
+                        break;
+                    case '\n':
+                        escaped = "\\n";
+                        break;
+                    case '\r':
+                        escaped = "\\r";
+                        break;
+                    case '\t':
+                        escaped = "\\t";
+                        break;
+                    default:
+                        escaped = c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+                }
+                if (escaped != null) {
+                    writer.write(value, from, i - from);
+                    writer.write(escaped);
+                    from = i + 1;
+                }
+            }
+            writer.write(value, from, value.length() - from);
+            writer.write('"');
+        }
+    }
+
+    private static class CsvSink implements TranslateSink {
+        private final Writer writer;
+        /**
+         * 输出的列，未指定时在开始输出时确定
+         */
+        private String[] columns;
+        private Map<String, Integer> columnIndexes;
+        /**
+         * 当前行的值，按列的顺序
+         */
+        private String[] values;
+
+        private CsvSink(Writer writer, String[] columns) {
+            this.writer = writer;
+            if (columns != null && columns.length > 0) {
+                initColumns(columns);
+            }
+        }
+
+        private void initColumns(String[] columns) {
+            this.columns = columns;
+            this.columnIndexes = new HashMap<>(columns.length * 4 / 3 + 1);
+            for (int i = 0; i < columns.length; i++) {
+                columnIndexes.put(columns[i], i);
+            }
+            this.values = new String[columns.length];
+        }
+
+        @Override
+        public void start(List<String> columns) throws IOException {
+            if (this.columns == null) {
+                initColumns(columns.toArray(new String[0]));
+            }
+            writeLine(this.columns);
+        }
+
+        @Override
+        public void startRow() {
+            Arrays.fill(values, null);
+        }
+
+        @Override
+        public void field(String name, String value) {
+            Integer index = columnIndexes.get(name);
+            if (index != null) {
+                values[index] = value;
+            }
+        }
+
+        @Override
+        public void endRow() throws IOException {
+            writeLine(values);
+        }
+
+        @Override
+        public void end() throws IOException {
+            writer.flush();
+        }
+
+        private void writeLine(String[] line) throws IOException {
+            for (int i = 0; i < line.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                String value = line[i];
+                if (value == null) {
+                    continue;
+                }
+                if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                    writer.write('"');
+                    writer.write(value.replace("\"", "\"\""));
+                    writer.write('"');
+                } else {
+                    writer.write(value);
+                }
+            }
+            writer.write("\r\n");
+        }
+    }
+}
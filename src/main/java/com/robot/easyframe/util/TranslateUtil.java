@@ -1,25 +1,20 @@
 package com.robot.easyframe.util;
 
 import com.ai.appframe2.bo.DataContainer;
+import com.ai.appframe2.bo.ObjectTypeNull;
 import com.ai.appframe2.common.DataStructInterface;
-import com.ai.appframe2.complex.cache.CacheFactory;
-import com.ai.common.bo.BOBsStaticDataBean;
-import com.ai.common.util.StaticDataUtil;
-import com.ai.secframe.orgmodel.bo.BOSecOrganizeBean;
-import com.ai.secframe.orgmodel.bo.QBOSecOrgStaffOperBean;
+import com.robot.easyframe.annotation.DicType;
 import com.robot.easyframe.annotation.Translate;
 import com.robot.easyframe.annotation.Dictionary;
-import com.robot.easyframe.core.dao.BaseDao;
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.lang.reflect.Field;
+import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-import static com.robot.easyframe.util.LambdaExceptionUtil.wrapFunction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 
 /**
@@ -33,6 +28,30 @@ public class TranslateUtil {
     private static final String TRANSLATE_MAP = "TRANSLATE_MAP";
     private static Log log = LogFactory.getLog(TranslateUtil.class);
 
+    /**
+     * 翻译计划缓存，key为待翻译的class列表
+     */
+    private static final Map<List<Class<?>>, TranslatePlan> PLAN_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * 并行翻译的默认阈值（数据条数），默认关闭并行翻译
+     * 顺序翻译3个属性约0.2微秒/条（100万条约200ms），目前没有多核机器上顺序与分块并行的对比数据，
+     * 需要时按实际环境压测后通过{@link #setParallelThreshold(int)}开启
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = Integer.MAX_VALUE;
+
+    /**
+     * 并行翻译时每块的最小数据量
+     */
+    private static final int MIN_CHUNK_SIZE = 10000;
+
+    private static volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * 并行翻译专用线程池，避免占用公共ForkJoinPool
+     */
+    private static volatile ForkJoinPool translatePool;
+
     /**
      * 翻译并转换成List（只用于单表查询）
      *
@@ -61,105 +80,121 @@ public class TranslateUtil {
     }
 
     /**
-     * 执行翻译
+     * 替换员工（DicType.OP）或组织（DicType.ORG）翻译的数据提供者
+     * 默认按QBOSecOrgStaffOperBean、BOSecOrganizeBean查询数据库，项目中有对应的缓存或服务时可替换
      *
+     * @param type     DicType.OP 或 DicType.ORG
+     * @param provider 翻译数据提供者
+     */
+    public static void registerProvider(DicType type, TranslateProvider provider) {
+        TranslatePlan.registerProvider(type, provider);
+    }
+
+    /**
+     * 翻译并逐行输出（适用于大量数据的导出）
+     * 不在bean中保存翻译结果，也不生成中间的List和Map，输出的属性及其值同{@link #parse(DataContainer[], Class[])}
+     * 如：TranslateUtil.write(datas, TranslateSinks.json(writer))
      *
-     * @param origins 原始bo数组
-     * @see this.getTranslateName()
+     * @param origins 待翻译数据
+     * @param sink    输出目标
+     * @param classes 待翻译的class列表，不传时取第一条数据的class
+     * @throws IOException 输出失败
      */
     @SafeVarargs
-    private static void translate(DataContainer[] origins, Class<? extends DataContainer>... clazz) {
+    public static void write(DataContainer[] origins, TranslateSink sink, Class<? extends DataContainer>... classes) throws IOException {
         if (origins.length == 0) {
+            sink.start(Collections.emptyList());
+            sink.end();
             return;
         }
-        // 待翻译属性名列表
-        List<String> fieldNameList = new ArrayList<>();
-        // 字典数据源列表
-        List<DataStructInterface[]> dictList = new ArrayList<>();
-        // 字典code列表
-        List<String> dictCodeList = new ArrayList<>();
-        // 字典name列表
-        List<String> dictNameList = new ArrayList<>();
-        Class<? extends DataContainer>[] classes = clazz.length != 0 ? clazz : new Class[]{origins[0].getClass()};
-        preHandle(classes, fieldNameList, dictList, dictCodeList, dictNameList);
-        translate(origins, fieldNameList, dictList, dictCodeList, dictNameList);
-    }
-
-    private static void preHandle(Class<? extends DataContainer>[] classes, List<String> fieldNameList, List<DataStructInterface[]> dictList,
-                                  List<String> dictCodeList, List<String> dictNameList) {
-        // 获取bo中需要翻译的属性
-        List<Field> translateFieldList = Arrays.stream(classes)
-                .map(Class::getDeclaredFields)
-                .flatMap(Stream::of)
-                .filter(field -> field.isAnnotationPresent(Translate.class))
-                .collect(Collectors.toList());
-
-        if (translateFieldList.size() == 0) {
-            log.warn(String.format("找不到需要翻译的属性，请检查Bean:%s的配置，如果需要翻译，请在Bean中使用@Translate注解，如果只要转成List不需要翻译，可使用PartTool.toList()", Arrays.toString(classes)));
+        List<TranslatePlan.Item> items = getPlan(origins, classes).getItems();
+        TranslateDict[] dicts = new TranslateDict[items.size()];
+        // 翻译后的属性名 -> 序号，原属性与翻译后的属性重名时以翻译结果为准（同bean2Map）
+        Map<String, Integer> translateIndexes = new HashMap<>(items.size() * 4 / 3 + 1);
+        for (int i = 0; i < items.size(); i++) {
+            dicts[i] = items.get(i).resolveDict(origins);
+            translateIndexes.put(items.get(i).translateName, i);
         }
-        for (Field field : translateFieldList) {
-            // 1.保存要翻译的属性名
-            String fieldName = getRealFieldName(field.getName());
-            if (fieldNameList.contains(fieldName)) {
-                // 不同的bo可能有相同的属性，跳过
-                continue;
+        // 每种bo的属性名只取一次，不复制bean的属性map
+        Map<Class<?>, String[]> propertyNames = new HashMap<>(4);
+        Set<String> columns = new LinkedHashSet<>();
+        Class<?> lastClass = null;
+        for (DataContainer origin : origins) {
+            if (origin.getClass() != lastClass || origin.getObjectType() instanceof ObjectTypeNull) {
+                lastClass = origin.getClass();
+                columns.addAll(Arrays.asList(getPropertyNames(origin, propertyNames)));
             }
-            fieldNameList.add(fieldName);
+        }
+        for (TranslatePlan.Item item : items) {
+            columns.add(item.translateName);
+        }
+        sink.start(new ArrayList<>(columns));
 
-            // 2.保存每个属性翻译的字典、字典code、字典name
-            // 获取属性上的翻译配置信息
-            Translate translateConfig = field.getAnnotation(Translate.class);
-            // 配置的字典数据源class
-            Class<?> srcClass = translateConfig.src();
-            // 获取字典数据源配置信息
-            Dictionary dictionaryConfig = srcClass.getAnnotation(Dictionary.class);
-            // 翻译字典源
-            DataStructInterface[] dict = null;
-            // 字典值属性，字典名称属性
-            String code = null, name = null;
-            // 根据翻译类型准备数据
-            try {
-                switch (translateConfig.type()) {
-                    case STATIC:
-                        // 静态字典的key
-                        String[] staticKeys = translateConfig.staticKey();
-                        // 合并多个字典
-                        dict = Stream.of(staticKeys).flatMap(wrapFunction(v -> Stream.of(StaticDataUtil.getStaticData(v)))).toArray(DataStructInterface[]::new);
-                        code = BOBsStaticDataBean.S_CodeValue;
-                        name = BOBsStaticDataBean.S_CodeName;
-                        break;
-                    case CACHE:
-                        dict = (DataStructInterface[]) CacheFactory.get(srcClass, srcClass);
-                        code = StringUtils.isEmpty(translateConfig.dicKey()) ? dictionaryConfig.key() : translateConfig.dicKey();
-                        name = StringUtils.isEmpty(translateConfig.dicValue()) ? dictionaryConfig.value() : translateConfig.dicValue();
-                        break;
-                    case DAO:
-                        dict = ((BaseDao) ServiceUtil.get(srcClass)).getAll();
-                        code = StringUtils.isEmpty(translateConfig.dicKey()) ? dictionaryConfig.key() : translateConfig.dicKey();
-                        name = StringUtils.isEmpty(translateConfig.dicValue()) ? dictionaryConfig.value() : translateConfig.dicValue();
-                        break;
-                    case OP:
-                        //todo: 根据项目改成实际的缓存类
-                        // dict = (QBOSecOrgStaffOperBean[]) CacheFactory.get(opCacheClass, opCacheClass);
-                        code = QBOSecOrgStaffOperBean.S_StaffId;
-                        name = QBOSecOrgStaffOperBean.S_StaffName;
-                        break;
-                    case ORG:
-                        //todo: 根据项目改成实际的缓存类
-                        // dict = (BOSecOrganizeBean[]) CacheFactory.get(orgCacheClass, orgCacheClass);
-                        code = BOSecOrganizeBean.S_OrganizeId;
-                        name = BOSecOrganizeBean.S_OrganizeName;
-                        break;
-                    default:
+        String[] translated = new String[items.size()];
+        for (DataContainer origin : origins) {
+            for (int i = 0; i < items.size(); i++) {
+                Object originValue = origin.get(items.get(i).fieldName);
+                translated[i] = originValue == null ? null :
+                        dicts[i] == null ? originValue.toString() : dicts[i].translate(originValue.toString());
+            }
+            sink.startRow();
+            for (String name : getPropertyNames(origin, propertyNames)) {
+                Integer index = translateIndexes.get(name);
+                Object value = origin.get(name);
+                if (value != null && (index == null || translated[index] == null)) {
+                    sink.field(name, Convert.toStr(value));
+                }
+            }
+            for (int i = 0; i < items.size(); i++) {
+                if (translated[i] != null) {
+                    sink.field(items.get(i).translateName, translated[i]);
                 }
-            } catch (Exception e) {
-                log.error("字典数据源获取失败：" + e);
-                dict = new DataContainer[0];
             }
-            dictList.add(dict);
-            dictCodeList.add(code);
-            dictNameList.add(name);
+            sink.endRow();
         }
+        sink.end();
+    }
+
+    /**
+     * 获取bean的属性名：bo类取表结构中的属性（按类缓存），DataContainer取已设置的属性
+     */
+    private static String[] getPropertyNames(DataContainer origin, Map<Class<?>, String[]> cache) {
+        if (origin.getObjectType() instanceof ObjectTypeNull) {
+            return origin.getPropertyNames();
+        }
+        return cache.computeIfAbsent(origin.getClass(), key -> origin.getPropertyNames());
+    }
+
+    /**
+     * 执行翻译
+     *
+     *
+     * @param origins 原始bo数组
+     * @see this.getTranslateName()
+     */
+    @SafeVarargs
+    private static void translate(DataContainer[] origins, Class<? extends DataContainer>... clazz) {
+        if (origins.length == 0) {
+            return;
+        }
+        List<TranslatePlan.Item> items = getPlan(origins, clazz).getItems();
+        List<String> fieldNameList = new ArrayList<>(items.size());
+        List<String> translateNameList = new ArrayList<>(items.size());
+        List<TranslateDict> dictList = new ArrayList<>(items.size());
+        for (TranslatePlan.Item item : items) {
+            fieldNameList.add(item.fieldName);
+            translateNameList.add(item.translateName);
+            dictList.add(item.resolveDict(origins));
+        }
+        translateByDict(origins, fieldNameList, translateNameList, dictList);
+    }
+
+    /**
+     * 获取翻译计划，同一组class的翻译计划只生成一次
+     */
+    private static TranslatePlan getPlan(DataContainer[] origins, Class<?>[] clazz) {
+        Class<?>[] classes = clazz.length != 0 ? clazz : new Class[]{origins[0].getClass()};
+        return PLAN_CACHE.computeIfAbsent(Arrays.asList(classes), key -> TranslatePlan.of(classes));
     }
 
     /**
@@ -169,7 +204,7 @@ public class TranslateUtil {
      * @param fieldName 属性名
      * @return 真实属性名
      */
-    private static String getRealFieldName(String fieldName) {
+    static String getRealFieldName(String fieldName) {
         fieldName = fieldName.substring(2);
         StringBuilder sb = new StringBuilder(fieldName);
         int position = 0;
@@ -194,10 +229,54 @@ public class TranslateUtil {
      */
     public static <T extends DataContainer> void translate(T[] origins, List<String> fieldNameList, List<DataStructInterface[]> dictList,
                                                            List<String> dictCodeList, List<String> dictNameList) {
-        for (T origin : origins) {
+        // 每个字典只转换一次哈希表，翻译时直接查找
+        List<TranslateDict> translateDictList = new ArrayList<>(dictList.size());
+        for (int i = 0; i < dictList.size(); i++) {
+            DataStructInterface[] dict = dictList.get(i);
+            translateDictList.add(dict == null ? null : TranslateDict.of(dict, dictCodeList.get(i), dictNameList.get(i)));
+        }
+        List<String> translateNameList = new ArrayList<>(fieldNameList.size());
+        for (String fieldName : fieldNameList) {
+            translateNameList.add(getTranslateName(fieldName));
+        }
+        translateByDict(origins, fieldNameList, translateNameList, translateDictList);
+    }
+
+    /**
+     * 对字典进行匹配，匹配不到则显示翻译前的值
+     *
+     * @param origins           原始对象数组
+     * @param fieldNameList     翻译属性列表
+     * @param translateNameList 翻译后的属性名列表
+     * @param dictList          翻译字典列表，字典为null时显示原值
+     */
+    private static <T extends DataContainer> void translateByDict(T[] origins, List<String> fieldNameList, List<String> translateNameList,
+                                                                  List<TranslateDict> dictList) {
+        if (origins.length < parallelThreshold || origins.length < MIN_CHUNK_SIZE * 2
+                || Runtime.getRuntime().availableProcessors() <= 1) {
+            translateRows(origins, 0, origins.length, fieldNameList, translateNameList, dictList);
+            return;
+        }
+        // 数据量大时分块并行翻译，每条数据只由一个线程处理
+        ForkJoinPool pool = getTranslatePool();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, origins.length / (pool.getParallelism() * 4));
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int from = 0; from < origins.length; from += chunkSize) {
+            int start = from, end = Math.min(from + chunkSize, origins.length);
+            tasks.add(pool.submit(() -> translateRows(origins, start, end, fieldNameList, translateNameList, dictList)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    private static <T extends DataContainer> void translateRows(T[] origins, int from, int to, List<String> fieldNameList,
+                                                                List<String> translateNameList, List<TranslateDict> dictList) {
+        for (int row = from; row < to; row++) {
+            T origin = origins[row];
             for (int i = 0; i < fieldNameList.size(); i++) {
                 String originField = fieldNameList.get(i);
-                Object originValue = origin.getProperties().get(originField);
+                Object originValue = origin.get(originField);
                 if (originValue == null) {
                     continue;
                 }
@@ -206,14 +285,38 @@ public class TranslateUtil {
                     // 字典数据源获取失败时显示原值
                     translateResult = originValue.toString();
                 } else {
-                    translateResult = translate(originValue.toString(), dictList.get(i), dictCodeList.get(i), dictNameList.get(i));
+                    translateResult = dictList.get(i).translate(originValue.toString());
                 }
-                origin.setDiaplayAttr(TRANSLATE_MAP, getTranslateName(originField), translateResult);
+                origin.setDiaplayAttr(TRANSLATE_MAP, translateNameList.get(i), translateResult);
             }
         }
 
     }
 
+    /**
+     * 设置并行翻译的阈值：待翻译数据达到该条数时分块并行翻译
+     *
+     * @param threshold 阈值，默认{@link #DEFAULT_PARALLEL_THRESHOLD}（不并行），设为Integer.MAX_VALUE可关闭并行翻译
+     */
+    public static void setParallelThreshold(int threshold) {
+        parallelThreshold = threshold;
+    }
+
+    private static ForkJoinPool getTranslatePool() {
+        if (translatePool == null) {
+            synchronized (TranslateUtil.class) {
+                if (translatePool == null) {
+                    translatePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                        thread.setName("easyframe-translate-" + thread.getPoolIndex());
+                        return thread;
+                    }, null, false);
+                }
+            }
+        }
+        return translatePool;
+    }
+
     /**
      * 单独属性翻译方法
      * 所有属性翻译完成后需要使用本类的beans2List()方法转换成List，否则翻译后的值会丢失
@@ -235,24 +338,6 @@ public class TranslateUtil {
         );
     }
 
-    /**
-     * 翻译String，字典中没找到的话返回原始值
-     *
-     * @param originValue 原始值
-     * @param dict        字典数据源
-     * @param codeField   字典的code
-     * @param nameField   字典的name
-     * @return 翻译后的值
-     */
-    private static String translate(String originValue, DataStructInterface[] dict, String codeField, String nameField) {
-        if (StringUtils.isEmpty(originValue)) {
-            return originValue;
-        }
-        return Arrays.stream(dict).filter(bean -> String.valueOf(bean.get(codeField)).equals(originValue))
-                .map(v -> String.valueOf(Optional.ofNullable(v.get(nameField)).orElse("")))
-                .findFirst().orElse(originValue);
-    }
-
     /**
      * 对象转Map(如果有翻译，翻译的属性和值也会放到Map中)
      *
@@ -296,7 +381,7 @@ public class TranslateUtil {
      * @return
      */
     @SuppressWarnings("all")
-    private static String getTranslateName(String srcName) {
+    static String getTranslateName(String srcName) {
         if (srcName.endsWith("CODE") || srcName.endsWith("ID")) {
             return srcName.replaceAll("(CODE|ID)$", "NAME");
         } else {